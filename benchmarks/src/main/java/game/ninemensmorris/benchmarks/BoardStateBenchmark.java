@@ -0,0 +1,82 @@
+package game.ninemensmorris.benchmarks;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveList;
+import game.ninemensmorris.model.SimpleMoveEvaluationFunction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardStateBenchmark {
+	@Param({Positions.OPENING, Positions.MIDGAME, Positions.FLYING})
+	public String position;
+
+	private BoardState board;
+	private MoveList moveList;
+	private SimpleMoveEvaluationFunction moveEvaluationFunction;
+	private int[] moves;
+	private int numberOfMoves;
+
+	@Setup
+	public void setUp() {
+		board = Positions.get(position);
+		moveList = new MoveList();
+		moveEvaluationFunction = new SimpleMoveEvaluationFunction();
+		moves = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		numberOfMoves = board.generateValidMoves(moves);
+	}
+
+	@Benchmark
+	public List<Move> getValidMoves() {
+		return board.getValidMoves(moveEvaluationFunction);
+	}
+
+	@Benchmark
+	public int generateValidMoves() {
+		board.generateValidMoves(moveList);
+		return moveList.size();
+	}
+
+	@Benchmark
+	public long makeAndUndoMoves() {
+		for (int i = 0; i < numberOfMoves; i++) {
+			board.makeMove(moves[i]);
+			board.undoMove(moves[i]);
+		}
+
+		return board.getBoardID();
+	}
+
+	@Benchmark
+	public void doesPieceCompleteMill(Blackhole blackhole) {
+		for (int i = 0; i < BoardState.NUMBER_OF_POSITIONS; i++) {
+			blackhole.consume(board.doesPieceCompleteMill(-1, i, board.getCurrentPlayer()));
+		}
+	}
+
+	@Benchmark
+	public int evaluateBoard() {
+		return AlphaBetaPruning.evaluateBoard(board);
+	}
+}
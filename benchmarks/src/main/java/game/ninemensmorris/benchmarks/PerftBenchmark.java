@@ -0,0 +1,67 @@
+package game.ninemensmorris.benchmarks;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.tools.Perft;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counts the leaf nodes of the full move tree, so that a faster move
+ * generator that generates different moves fails instead of looking good.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerftBenchmark {
+	private static final int DEPTH = 5;
+
+	@Param({Positions.OPENING, Positions.MIDGAME, Positions.FLYING})
+	public String position;
+
+	private BoardState board;
+	private long expectedNodes;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Setup
+	public void setUp() {
+		board = Positions.get(position);
+
+		for (int i = 0; i < Perft.getNumberOfReferencePositions(); i++) {
+			if (Perft.getReferencePosition(i).toNotation().equals(board.toNotation())) {
+				expectedNodes = Perft.getReferenceCount(i, DEPTH);
+			}
+		}
+	}
+
+	@Benchmark
+	public long perft(Nodes nodes) {
+		long result = Perft.perft(board, DEPTH);
+		if (result != expectedNodes) {
+			throw new IllegalStateException("Perft(" + DEPTH + ") of " + position + " is " + result + ", expected " + expectedNodes);
+		}
+
+		nodes.nodes += result;
+		return result;
+	}
+}
@@ -0,0 +1,31 @@
+package game.ninemensmorris.benchmarks;
+
+import game.ninemensmorris.model.BoardState;
+
+/**
+ * The positions all benchmarks run on, one from every phase of the game.
+ */
+public final class Positions {
+	public static final String OPENING = "opening";
+	public static final String MIDGAME = "midgame";
+	public static final String FLYING = "flying";
+
+	private Positions() {
+	}
+
+	/**
+	 * The flying position has three white pieces on move. It is searched with
+	 * adjacent moves only while {@link BoardState#IS_FLYING_ALLOWED} is off.
+	 */
+	public static BoardState get(String name) {
+		if (OPENING.equals(name)) {
+			return new BoardState("BB.......W....B..W...W.. W 6 6");
+		} else if (MIDGAME.equals(name)) {
+			return new BoardState("BWWBWB.BW.BW..BWB.B..BW. W 0 0");
+		} else if (FLYING.equals(name)) {
+			return new BoardState("B.W.W.B....B...B.W..B.B. W 0 0");
+		}
+
+		throw new IllegalArgumentException("Unknown position: " + name);
+	}
+}
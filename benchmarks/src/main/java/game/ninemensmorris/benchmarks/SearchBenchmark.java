@@ -0,0 +1,68 @@
+package game.ninemensmorris.benchmarks;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.TranspositionTable;
+import game.ninemensmorris.model.Move;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fixed-depth searches starting from an empty transposition table, reporting
+ * the searched nodes next to the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	private static final int TRANSPOSITION_TABLE_SIZE_IN_MB = 16;
+
+	@Param({Positions.OPENING, Positions.MIDGAME, Positions.FLYING})
+	public String position;
+
+	@Param({"6", "8"})
+	public int depth;
+
+	private AlphaBetaPruning search;
+	private TranspositionTable transpositionTable;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Setup
+	public void setUp() {
+		transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_IN_MB);
+		search = new AlphaBetaPruning(Positions.get(position), depth, Integer.MAX_VALUE, transpositionTable);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTranspositionTable() {
+		transpositionTable.clear();
+	}
+
+	@Benchmark
+	public Move searchForBestMove(Nodes nodes) {
+		Move result = search.searchForBestMove();
+		nodes.nodes += search.getNumberOfSearchedNodes();
+		return result;
+	}
+}
@@ -1,51 +1,109 @@
 package game.ninemensmorris.algorithms;
 
+import game.ninemensmorris.book.OpeningBook;
+import game.ninemensmorris.endgame.EndgameDatabase;
+import game.ninemensmorris.model.BoardEvaluationFunction;
 import game.ninemensmorris.model.BoardState;
-import game.ninemensmorris.model.BoardStateValue;
+import game.ninemensmorris.model.BoardSymmetry;
+import game.ninemensmorris.model.EvaluationWeights;
 import game.ninemensmorris.model.Move;
 import game.ninemensmorris.model.MoveEvaluationFunction;
+import game.ninemensmorris.model.MoveList;
 import game.ninemensmorris.model.SimpleMoveEvaluationFunction;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 public class AlphaBetaPruning {
 	private static final int INFINITY = 1001;
 	private static final int WIN_BOARD_VALUE = 1000;
 	private static final int END_SEARCH = 10000;
+	private static final int ASPIRATION_WINDOW = 10;
+	private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+	private static final int CAPTURE_SCORE = 3 << 28;
+	private static final int KILLER_MOVE_SCORE = 2 << 28;
+	private static final int HISTORY_BITS = 20;
+	private static final int MAX_HISTORY_SCORE = 1 << HISTORY_BITS;
+	private static final int NUMBER_OF_KILLER_MOVES = 2;
+	private static final int CLOCK_CHECK_INTERVAL = 1024;
 
 	private BoardState boardState;
 	private int maxDepth;
 	private int maxTime;
-	private long startTime;
-	private Map<Long, BoardStateValue> transpositionTable;
-	private Move currentBestMove;
+	private TimeManager timeManager;
+	private int nodesUntilClockCheck;
+	private TranspositionTable transpositionTable;
+	private EndgameDatabase endgameDatabase;
+	private OpeningBook openingBook;
+	private int currentBestMove;
 	private int currentBestMoveValue;
 	private MoveEvaluationFunction moveEvaluationFunction;
+	private BoardEvaluationFunction boardEvaluationFunction;
 	private BoardState currentBoard;
-	private boolean doTerminateMove;
+	private volatile boolean doTerminateMove;
+	private MoveList[] moveListsPerDepth;
+	private int[][] killerMovesPerDepth;
+	private int[][] history;
+	private int numberOfThreads;
+	private boolean isPrincipalVariationSearchEnabled;
+	private boolean isSymmetryReductionEnabled;
+	private volatile AlphaBetaPruning[] helpers;
+	private boolean isHelper;
+	private SearchListener searchListener;
+	private SearchInfo lastSearchInfo;
+	private volatile boolean isPondering;
+	private volatile boolean isPonderingStopped;
+	private final Object ponderLock;
+	private BoardState ponderBoard;
+	private volatile Thread ponderThread;
+	private Move ponderResult;
+	private long numberOfNodes;
+	private long numberOfSearchedNodes;
+	private long numberOfBetaCutoffs;
+	private long numberOfFirstMoveBetaCutoffs;
+	private long numberOfSearchedBetaCutoffs;
+	private long numberOfSearchedFirstMoveBetaCutoffs;
 
 	public AlphaBetaPruning(BoardState boardState, int maxDepth, int maxTime) {
+		this(boardState, maxDepth, maxTime, TranspositionTable.DEFAULT_SIZE_IN_MB);
+	}
+	
+	public AlphaBetaPruning(BoardState boardState, int maxDepth, int maxTime, int transpositionTableSizeInMB) {
+		this(boardState, maxDepth, maxTime, new TranspositionTable(transpositionTableSizeInMB));
+	}
+	
+	public AlphaBetaPruning(BoardState boardState, int maxDepth, int maxTime, TranspositionTable transpositionTable) {
 		this.boardState = boardState;
 		this.maxDepth = maxDepth;
 		this.maxTime = maxTime;
 		this.moveEvaluationFunction = new SimpleMoveEvaluationFunction();
-		this.transpositionTable = new HashMap<Long, BoardStateValue>();
+		this.boardEvaluationFunction = EvaluationWeights.DEFAULT;
+		this.transpositionTable = transpositionTable;
 		this.doTerminateMove = false;
+		this.numberOfThreads = 1;
+		this.isPrincipalVariationSearchEnabled = true;
+		this.isSymmetryReductionEnabled = false;
+		this.helpers = new AlphaBetaPruning[0];
+		this.isHelper = false;
+		this.isPondering = false;
+		this.isPonderingStopped = false;
+		this.ponderLock = new Object();
 		
 		this.currentBoard = null;
-		this.startTime = 0;
-		this.currentBestMove = null;
+		this.timeManager = new TimeManager();
+		this.nodesUntilClockCheck = CLOCK_CHECK_INTERVAL;
+		this.currentBestMove = Move.NO_MOVE;
 		currentBestMoveValue = -INFINITY;
+		this.moveListsPerDepth = new MoveList[0];
+		this.killerMovesPerDepth = new int[0][];
+		this.history = new int[BoardState.NUMBER_OF_POSITIONS + 1][BoardState.NUMBER_OF_POSITIONS];
 	}
 	
 	public void setBoardState(BoardState boardState) {
-		this.currentBoard = boardState;
+		this.boardState = boardState;
 	}
 
 	public BoardState getBoardState() {
-		return currentBoard;
+		return boardState;
 	}
 	
 	public void setMaxDepth(int maxDepth) {
@@ -64,37 +122,149 @@ public class AlphaBetaPruning {
 		return maxTime;
 	}
 	
-	private int getNumberOfAdjacentMoves(int player) {
-		int result = 0;
-
-		for (int i = 0; i < BoardState.NUMBER_OF_POSITIONS; i++) {
-			if (currentBoard.getPositionState(i) == player + 1) {
-				for (int j : BoardState.POSITION_TO_NEIGHBOURS.get(i)) {
-					if (currentBoard.getPositionState(j) == 0) {
-						result++;
-					}
-				}
-			}
+	/**
+	 * Sets the number of threads used by {@link #searchForBestMove()}. Every
+	 * thread beyond the first runs the same iterative deepening on its own
+	 * copy of the board, sharing only the transposition table (Lazy SMP).
+	 */
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException();
 		}
-		
-		return result;
+
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	public int getNumberOfThreads() {
+		return numberOfThreads;
 	}
 	
-	private int getNumberOfMills(int player) {
-		int result = 0;
-		
-		millCordsLoop:
-		for (List<Integer> millCords : BoardState.POSSIBLE_MILLS) {
-			for (int i : millCords) {
-				if (currentBoard.getPositionState(i) != player + 1) {
-					continue millCordsLoop;
-				}
-			}
-			
-			result++;
+	/**
+	 * Enables principal variation search: every move after the first one is
+	 * searched with a null window and only re-searched if it fails high, and
+	 * every iteration after the first starts with an aspiration window around
+	 * the value of the previous one.
+	 */
+	public void setPrincipalVariationSearch(boolean isPrincipalVariationSearchEnabled) {
+		this.isPrincipalVariationSearchEnabled = isPrincipalVariationSearchEnabled;
+	}
+	
+	public boolean isPrincipalVariationSearchEnabled() {
+		return isPrincipalVariationSearchEnabled;
+	}
+	
+	/**
+	 * Keys the transposition table on the canonical form of the board, so
+	 * that all symmetric boards share one entry. The stored best moves are
+	 * kept in the canonical orientation and mapped back when probed. A table
+	 * should not be shared between searches with different settings.
+	 */
+	public void setSymmetryReduction(boolean isSymmetryReductionEnabled) {
+		this.isSymmetryReductionEnabled = isSymmetryReductionEnabled;
+	}
+	
+	public boolean isSymmetryReductionEnabled() {
+		return isSymmetryReductionEnabled;
+	}
+	
+	public void setMoveEvaluationFunction(MoveEvaluationFunction moveEvaluationFunction) {
+		this.moveEvaluationFunction = moveEvaluationFunction;
+	}
+	
+	public MoveEvaluationFunction getMoveEvaluationFunction() {
+		return moveEvaluationFunction;
+	}
+	
+	/**
+	 * Sets the static evaluation of the leaves of the search, which must be
+	 * safe to call from several threads.
+	 */
+	public void setBoardEvaluationFunction(BoardEvaluationFunction boardEvaluationFunction) {
+		this.boardEvaluationFunction = boardEvaluationFunction;
+	}
+	
+	public BoardEvaluationFunction getBoardEvaluationFunction() {
+		return boardEvaluationFunction;
+	}
+	
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+	
+	/**
+	 * Sets the solved positions of the moving phase. They are used as exact
+	 * values of the nodes they cover and a root position covered by them is
+	 * answered without searching.
+	 */
+	public void setEndgameDatabase(EndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+	
+	public EndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+	
+	/**
+	 * Sets the book whose moves are played without searching.
+	 */
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+	
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+	
+	/**
+	 * Sets the listener notified after every finished iteration of
+	 * {@link #searchForBestMove()}, but not while pondering.
+	 */
+	public void setSearchListener(SearchListener searchListener) {
+		this.searchListener = searchListener;
+	}
+	
+	public SearchListener getSearchListener() {
+		return searchListener;
+	}
+	
+	/**
+	 * @return the last finished iteration of the last
+	 *         {@link #searchForBestMove()} or null if it did not search
+	 */
+	public SearchInfo getLastSearchInfo() {
+		return lastSearchInfo;
+	}
+	
+	/**
+	 * @return the number of nodes visited by all threads during the last
+	 *         {@link #searchForBestMove()}
+	 */
+	public long getNumberOfSearchedNodes() {
+		return numberOfSearchedNodes;
+	}
+	
+	/**
+	 * @return the number of beta cutoffs made by all threads during the last
+	 *         {@link #searchForBestMove()}
+	 */
+	public long getNumberOfBetaCutoffs() {
+		return numberOfSearchedBetaCutoffs;
+	}
+	
+	/**
+	 * @return the number of beta cutoffs made by the first searched move of a
+	 *         node during the last {@link #searchForBestMove()}
+	 */
+	public long getNumberOfFirstMoveBetaCutoffs() {
+		return numberOfSearchedFirstMoveBetaCutoffs;
+	}
+	
+	public double getFirstMoveBetaCutoffRate() {
+		if (numberOfSearchedBetaCutoffs == 0) {
+			return 0;
 		}
 		
-		return result;
+		return (double) numberOfSearchedFirstMoveBetaCutoffs / numberOfSearchedBetaCutoffs;
 	}
 	
 //	private int getNumberOfFormableMills(int player) {
@@ -132,59 +302,119 @@ public class AlphaBetaPruning {
 //		return result;
 //	}
 	
+	public static int evaluateBoard(BoardState board) {
+		return EvaluationWeights.DEFAULT.evaluate(board);
+	}
+	
 	private int evaluateCurrentBoard() {
-		int result = 0;
+		return boardEvaluationFunction.evaluate(currentBoard);
+	}
+	
+	/**
+	 * Faster wins and slower losses get values further from zero.
+	 */
+	private static int getEndgameBoardValue(int endgameValue) {
+		if (endgameValue == EndgameDatabase.DRAW) {
+			return 0;
+		}
 		
-		result += 10 * (currentBoard.getRemainingPiecesOfCurrentPlayer() - currentBoard.getRemainingPiecesOfOtherPlayer());
-		result += 2 * (getNumberOfAdjacentMoves(currentBoard.getCurrentPlayer()) - getNumberOfAdjacentMoves(currentBoard.getOtherPlayer()));
-		result += 8 * (getNumberOfMills(currentBoard.getCurrentPlayer()) - getNumberOfMills(currentBoard.getOtherPlayer()));
-		//result += 2 * (getNumberOfFormableMills(currentBoard.getCurrentPlayer()) - getNumberOfFormableMills(currentBoard.getOtherPlayer()));
+		int value = WIN_BOARD_VALUE - EndgameDatabase.getDistance(endgameValue);
+		return EndgameDatabase.isWin(endgameValue) ? value : -value;
+	}
+	/**
+	 * Checks the hard time limit, or while pondering whether pondering was
+	 * stopped, which only the main thread does. The helpers are terminated by
+	 * it.
+	 */
+	private boolean isTimeUp() {
+		nodesUntilClockCheck = CLOCK_CHECK_INTERVAL;
 		
-		return result;
+		if (isPondering) {
+			return isPonderingStopped;
+		}
+		return !isHelper && currentBestMove != Move.NO_MOVE && timeManager.isHardLimitReached();
 	}
+	
 	int hits = 0;
 	private int alphaBetaPrunningSearch(int alpha, int beta, int currentDepth, int remainingDepth) {
-		if ((System.currentTimeMillis() - startTime > maxTime && currentBestMove != null) || doTerminateMove) {
-			doTerminateMove = false;
+		// Like the time limit, a termination leaves the main thread at least
+		// one move to play.
+		if ((doTerminateMove && (isHelper || currentBestMove != Move.NO_MOVE))
+				|| (--nodesUntilClockCheck < 0 && isTimeUp())) {
 			return END_SEARCH;
 		}
+		numberOfNodes++;
+		
+		if (endgameDatabase != null && currentDepth > 0) {
+			int endgameValue = endgameDatabase.probe(currentBoard);
+			if (endgameValue != EndgameDatabase.UNKNOWN) {
+				return getEndgameBoardValue(endgameValue);
+			}
+		}
+
+		int symmetry = isSymmetryReductionEnabled ? currentBoard.getCanonicalSymmetry() : BoardSymmetry.IDENTITY;
+		long boardID = currentBoard.getBoardID(symmetry);
+		long boardComputedValue = transpositionTable.probe(boardID);
+		int hashMove = Move.NO_MOVE;
+		if (boardComputedValue != TranspositionTable.NOT_FOUND) {
+			hashMove = BoardSymmetry.transformMove(BoardSymmetry.getInverse(symmetry), TranspositionTable.getBestMove(boardComputedValue));
+		}
+		if (boardComputedValue != TranspositionTable.NOT_FOUND && (currentDepth == 0 || BoardState.VERIFY_BOARD_ID)
+				&& !currentBoard.isMoveValid(hashMove)) {
+			boardComputedValue = TranspositionTable.NOT_FOUND;
+			hashMove = Move.NO_MOVE;
+		}
+		if (boardComputedValue != TranspositionTable.NOT_FOUND
+				&& TranspositionTable.getRemainingDepth(boardComputedValue) >= remainingDepth) { hits++;
+			int value = TranspositionTable.getValue(boardComputedValue);
+			int bound = TranspositionTable.getBound(boardComputedValue);
 
-		BoardStateValue boardComputedValue = transpositionTable.get(currentBoard.getBoardID());
-		if (boardComputedValue != null && boardComputedValue.getRemainingDepth() >= remainingDepth) { hits++;
-			if (boardComputedValue.hasBeenCut()) {
-				alpha = Math.max(alpha, boardComputedValue.getValue());
+			if (bound == TranspositionTable.LOWER_BOUND) {
+				alpha = Math.max(alpha, value);
 			}
 			
-			if (boardComputedValue.couldHaveBeenCutDeeper()) {
-				beta = Math.min(beta, boardComputedValue.getValue());
+			if (bound == TranspositionTable.UPPER_BOUND) {
+				beta = Math.min(beta, value);
 			}
 			
-			if (!(boardComputedValue.couldHaveBeenCutDeeper() || boardComputedValue.hasBeenCut())
-					|| alpha >= beta) {
+			if (bound == TranspositionTable.EXACT || alpha >= beta) {
 				if (currentDepth == 0) {
-					currentBestMove = boardComputedValue.getFoundBestMove();
-					currentBestMoveValue = boardComputedValue.getValue();
+					currentBestMove = hashMove;
+					currentBestMoveValue = value;
 				}
 	
-				return boardComputedValue.getValue();
+				return value;
 			}
 		}
 
-		List<Move> validMoves = currentBoard.getValidMoves(moveEvaluationFunction);
-		if (currentBoard.getRemainingPiecesOfCurrentPlayer() < 3 || validMoves.isEmpty()) {
+		MoveList moveList = moveListsPerDepth[currentDepth];
+		currentBoard.generateValidMoves(moveList);
+		if (currentBoard.getRemainingPiecesOfCurrentPlayer() < 3 || moveList.isEmpty()) {
 			return -WIN_BOARD_VALUE;
 		}
 		
 		if (remainingDepth == 0) {
 			return evaluateCurrentBoard();
 		} else {
-			Move nodeBestMove = null;
+			orderMoves(moveList, hashMove, currentDepth);
+
+			int nodeBestMove = Move.NO_MOVE;
 			int nodeBestValue = -INFINITY;
 
-			for (Move move : validMoves) {
+			for (int i = 0; moveList.hasNext(); i++) {
+				int move = moveList.next();
 				currentBoard.makeMove(move);
 				
-				int value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth -1);
+				int value;
+				if (i == 0 || !isPrincipalVariationSearchEnabled) {
+					value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth - 1);
+				} else {
+					value = -alphaBetaPrunningSearch(-alpha - 1, -alpha, currentDepth + 1, remainingDepth - 1);
+					
+					if (value > alpha && value < beta) {
+						value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth - 1);
+					}
+				}
 
 				currentBoard.undoMove(move);
 			
@@ -207,27 +437,136 @@ public class AlphaBetaPruning {
 				}
 				
 				if (alpha >= beta) {
+					numberOfBetaCutoffs++;
+					if (i == 0) {
+						numberOfFirstMoveBetaCutoffs++;
+					}
+					if (Move.decodePositionOfTakenPiece(move) == -1) {
+						updateKillerMoves(move, currentDepth);
+						updateHistory(move, remainingDepth);
+					}
+					
 					break;
 				}
 			}
 			
-			transpositionTable.put(currentBoard.getBoardID(), new BoardStateValue(nodeBestValue, remainingDepth, nodeBestMove, alpha >= beta, nodeBestValue < alpha));
+			int bound = TranspositionTable.EXACT;
+			if (alpha >= beta) {
+				bound = TranspositionTable.LOWER_BOUND;
+			} else if (nodeBestValue < alpha) {
+				bound = TranspositionTable.UPPER_BOUND;
+			}
+			transpositionTable.store(boardID, nodeBestValue, remainingDepth, bound, BoardSymmetry.transformMove(symmetry, nodeBestMove));
 			
 			return nodeBestValue;
 		}
 	}
 	
-	public Move searchForBestMove() {
-		currentBestMove = null;
-		startTime = System.currentTimeMillis();
-		currentBoard = new BoardState(boardState);
+	/**
+	 * Orders the moves of a node: the move stored in the transposition table
+	 * first, then the moves taking a piece, then the killer moves of the depth
+	 * and then the rest by their move evaluation, ties broken by their history
+	 * score.
+	 */
+	private void orderMoves(MoveList moveList, int hashMove, int currentDepth) {
+		int[] killerMoves = killerMovesPerDepth[currentDepth];
+		
+		for (int i = 0; i < moveList.size(); i++) {
+			int move = moveList.getMove(i);
+			int score;
+			
+			if (move == hashMove) {
+				score = HASH_MOVE_SCORE;
+			} else if (Move.decodePositionOfTakenPiece(move) != -1) {
+				score = CAPTURE_SCORE + moveEvaluationFunction.evaluate(currentBoard, move);
+			} else if (move == killerMoves[0]) {
+				score = KILLER_MOVE_SCORE + 1;
+			} else if (move == killerMoves[1]) {
+				score = KILLER_MOVE_SCORE;
+			} else {
+				score = (moveEvaluationFunction.evaluate(currentBoard, move) << HISTORY_BITS)
+						+ history[Move.decodeFromPosition(move) + 1][Move.decodeToPosition(move)];
+			}
+			
+			moveList.setScore(i, score);
+		}
+	}
+	
+	private void updateKillerMoves(int move, int currentDepth) {
+		int[] killerMoves = killerMovesPerDepth[currentDepth];
+		
+		if (killerMoves[0] != move) {
+			killerMoves[1] = killerMoves[0];
+			killerMoves[0] = move;
+		}
+	}
+	
+	private void updateHistory(int move, int remainingDepth) {
+		int[] fromHistory = history[Move.decodeFromPosition(move) + 1];
+		int toPosition = Move.decodeToPosition(move);
+		
+		fromHistory[toPosition] += remainingDepth * remainingDepth;
+		
+		if (fromHistory[toPosition] >= MAX_HISTORY_SCORE) {
+			ageHistory();
+		}
+	}
+	
+	private void ageHistory() {
+		for (int[] fromHistory : history) {
+			for (int i = 0; i < fromHistory.length; i++) {
+				fromHistory[i] /= 2;
+			}
+		}
+	}
+	
+	static void scoreMoves(BoardState board, MoveEvaluationFunction moveEvaluationFunction, MoveList moveList) {
+		for (int i = 0; i < moveList.size(); i++) {
+			moveList.setScore(i, moveEvaluationFunction.evaluate(board, moveList.getMove(i)));
+		}
+	}
+	
+	private int iterativeDeepening(BoardState rootBoard, int firstDepth) {
+		int maxDepth = this.maxDepth;
+		currentBestMove = Move.NO_MOVE;
+		currentBoard = new BoardState(rootBoard);
 		currentBestMoveValue = -INFINITY;
-		Move prevBestMove = currentBestMove;
+		numberOfNodes = 0;
+		numberOfBetaCutoffs = 0;
+		numberOfFirstMoveBetaCutoffs = 0;
+		int prevBestMove = currentBestMove;
 		int prevBestMoveValue = currentBestMoveValue;
 		
+		if (moveListsPerDepth.length < maxDepth + 1) {
+			moveListsPerDepth = new MoveList[maxDepth + 1];
+			for (int i = 0; i < moveListsPerDepth.length; i++) {
+				moveListsPerDepth[i] = new MoveList();
+			}
+		}
+		killerMovesPerDepth = new int[maxDepth + 1][NUMBER_OF_KILLER_MOVES];
+		for (int[] killerMoves : killerMovesPerDepth) {
+			Arrays.fill(killerMoves, Move.NO_MOVE);
+		}
+		ageHistory();
 
-		for (int depth = Math.min(2, maxDepth); depth <= maxDepth; depth += 2) {
-			int value = alphaBetaPrunningSearch(-INFINITY, INFINITY, 0, depth);
+		for (int depth = firstDepth; depth <= maxDepth; depth += 2) {
+			int alpha = -INFINITY;
+			int beta = INFINITY;
+			if (isPrincipalVariationSearchEnabled && depth > firstDepth) {
+				alpha = Math.max(prevBestMoveValue - ASPIRATION_WINDOW, -INFINITY);
+				beta = Math.min(prevBestMoveValue + ASPIRATION_WINDOW, INFINITY);
+			}
+			
+			int value = alphaBetaPrunningSearch(alpha, beta, 0, depth);
+			while (Math.abs(value) != END_SEARCH && (value <= alpha || value >= beta)) {
+				if (value <= alpha) {
+					alpha = -INFINITY;
+				} else {
+					beta = INFINITY;
+				}
+				
+				value = alphaBetaPrunningSearch(alpha, beta, 0, depth);
+			}
 			
 			if (Math.abs(value) == END_SEARCH) {
 				if (currentBestMoveValue <= prevBestMoveValue) {
@@ -238,11 +577,131 @@ public class AlphaBetaPruning {
 				break;
 			}
 			
+			boolean hasBestMoveChanged = prevBestMove != Move.NO_MOVE && prevBestMove != currentBestMove;
 			prevBestMove = currentBestMove;
 			prevBestMoveValue = value;
+			
+			if (!isHelper) {
+				iterationFinished(rootBoard, depth, value);
+				
+				if (!timeManager.iterationFinished(hasBestMoveChanged) && !isPondering) {
+					break;
+				}
+			}
 		}
 
 		return currentBestMove;
+	}
+	
+	private void iterationFinished(BoardState rootBoard, int depth, int value) {
+		long nodes = numberOfNodes;
+		for (AlphaBetaPruning helper : helpers) {
+			nodes += helper.numberOfNodes;
+		}
+		
+		lastSearchInfo = new SearchInfo(depth, value, getPrincipalVariation(rootBoard, depth), nodes, timeManager.getElapsedTime());
+		if (searchListener != null && !isPondering) {
+			searchListener.iterationFinished(lastSearchInfo);
+		}
+	}
+	
+	/**
+	 * Follows the best moves stored in the transposition table from the best
+	 * move of the root.
+	 */
+	private int[] getPrincipalVariation(BoardState rootBoard, int depth) {
+		BoardState board = new BoardState(rootBoard);
+		int[] moves = new int[depth];
+		int length = 0;
+		
+		for (int move = currentBestMove; move != Move.NO_MOVE && length < depth; move = getHashMove(board)) {
+			moves[length++] = move;
+			board.makeMove(move);
+		}
+		
+		return Arrays.copyOf(moves, length);
+	}
+	
+	private int getHashMove(BoardState board) {
+		if (board.hasCurrentPlayerLost()) {
+			return Move.NO_MOVE;
+		}
+		
+		int symmetry = isSymmetryReductionEnabled ? board.getCanonicalSymmetry() : BoardSymmetry.IDENTITY;
+		long boardComputedValue = transpositionTable.probe(board.getBoardID(symmetry));
+		if (boardComputedValue == TranspositionTable.NOT_FOUND) {
+			return Move.NO_MOVE;
+		}
+		
+		int move = BoardSymmetry.transformMove(BoardSymmetry.getInverse(symmetry), TranspositionTable.getBestMove(boardComputedValue));
+		return board.isMoveValid(move) ? move : Move.NO_MOVE;
+	}
+	
+	/**
+	 * @return the move stored in the transposition table or else the best
+	 *         move by the move evaluation, for a search that ended without
+	 *         one
+	 */
+	private int getFallbackMove(BoardState board) {
+		int result = getHashMove(board);
+		if (result == Move.NO_MOVE) {
+			MoveList moveList = new MoveList();
+			board.generateValidMoves(moveList);
+			scoreMoves(board, moveEvaluationFunction, moveList);
+			result = moveList.next();
+		}
+		
+		return result;
+	}
+	
+	private Thread startHelper(final AlphaBetaPruning helper, final int firstDepth, int helperNumber) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				helper.iterativeDeepening(helper.boardState, firstDepth);
+			}
+		}, "AlphaBetaPruning helper " + helperNumber);
+		thread.setDaemon(true);
+		thread.start();
+		
+		return thread;
+	}
+	
+	private int getKnownMove(BoardState board) {
+		int result = Move.NO_MOVE;
+		if (openingBook != null) {
+			result = openingBook.getMove(board);
+		}
+		if (result == Move.NO_MOVE && endgameDatabase != null) {
+			result = endgameDatabase.getBestMove(board);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Searches the board for the best move. A termination requested by
+	 * {@link #terminateSearch()} also ends the later searches until
+	 * {@link #clearTermination()} is called.
+	 */
+	public Move searchForBestMove() {
+		lastSearchInfo = null;
+		
+		Move result = finishPondering();
+		if (result != null) {
+			return result;
+		}
+		
+		int knownMove = getKnownMove(boardState);
+		if (knownMove != Move.NO_MOVE) {
+			numberOfSearchedNodes = 0;
+			numberOfSearchedBetaCutoffs = 0;
+			numberOfSearchedFirstMoveBetaCutoffs = 0;
+			
+			return Move.decode(knownMove);
+		}
+		
+		return search(boardState);
 		
 //		List<Move> moves = boardState.getValidMoves(moveEvaluationFunction);
 //		Random random = new Random();
@@ -250,7 +709,178 @@ public class AlphaBetaPruning {
 //		return moves.get(random.nextInt(moves.size()));
 	}
 	
+	private Move search(BoardState rootBoard) {
+		timeManager.start(maxTime);
+		transpositionTable.newSearch();
+		
+		int firstDepth = Math.min(2, maxDepth);
+		AlphaBetaPruning[] searchHelpers = new AlphaBetaPruning[numberOfThreads - 1];
+		Thread[] helperThreads = new Thread[searchHelpers.length];
+		
+		for (int i = 0; i < searchHelpers.length; i++) {
+			searchHelpers[i] = new AlphaBetaPruning(rootBoard, maxDepth, maxTime, transpositionTable);
+			searchHelpers[i].moveEvaluationFunction = moveEvaluationFunction;
+			searchHelpers[i].boardEvaluationFunction = boardEvaluationFunction;
+			searchHelpers[i].endgameDatabase = endgameDatabase;
+			searchHelpers[i].isPrincipalVariationSearchEnabled = isPrincipalVariationSearchEnabled;
+			searchHelpers[i].isSymmetryReductionEnabled = isSymmetryReductionEnabled;
+			searchHelpers[i].isHelper = true;
+			
+			// Every other helper starts one iteration deeper, so that the threads
+			// spread over different depths instead of repeating the same work.
+			int helperFirstDepth = Math.min(firstDepth + 2 * ((i + 1) % 2), maxDepth);
+			helperThreads[i] = startHelper(searchHelpers[i], helperFirstDepth, i + 1);
+		}
+		helpers = searchHelpers;
+		
+		int bestMove = iterativeDeepening(rootBoard, firstDepth);
+		if (bestMove == Move.NO_MOVE && !rootBoard.hasCurrentPlayerLost()) {
+			bestMove = getFallbackMove(rootBoard);
+		}
+		Move result = Move.decode(bestMove);
+		numberOfSearchedNodes = numberOfNodes;
+		numberOfSearchedBetaCutoffs = numberOfBetaCutoffs;
+		numberOfSearchedFirstMoveBetaCutoffs = numberOfFirstMoveBetaCutoffs;
+		
+		for (int i = 0; i < searchHelpers.length; i++) {
+			searchHelpers[i].terminateSearch();
+		}
+		for (int i = 0; i < helperThreads.length; i++) {
+			try {
+				helperThreads[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			numberOfSearchedNodes += searchHelpers[i].numberOfNodes;
+			numberOfSearchedBetaCutoffs += searchHelpers[i].numberOfBetaCutoffs;
+			numberOfSearchedFirstMoveBetaCutoffs += searchHelpers[i].numberOfFirstMoveBetaCutoffs;
+		}
+
+		return result;
+	}
+	
+	/**
+	 * @return the best reply to the current board stored in the
+	 *         transposition table, which after a search is the second move of
+	 *         its principal variation, or null if there is none
+	 */
+	public Move getPonderMove() {
+		return Move.decode(getHashMove(boardState));
+	}
+	
+	/**
+	 * Searches in the background, without time limit, the board after the
+	 * {@link #getPonderMove() predicted reply} to the current board, which is
+	 * meant to be called after the computer's move while the other player is
+	 * thinking. The next {@link #searchForBestMove()} continues the
+	 * background search under its time limit if the reply was played, and
+	 * otherwise stops it and searches anew, using what the background search
+	 * stored in the transposition table. Pondering may be controlled from
+	 * any thread.
+	 */
+	public void startPondering() {
+		synchronized (ponderLock) {
+			stopPondering();
+			
+			Move ponderMove = getPonderMove();
+			if (ponderMove == null) {
+				return;
+			}
+			
+			final BoardState board = new BoardState(boardState);
+			board.makeMove(ponderMove);
+			if (board.hasCurrentPlayerLost() || getKnownMove(board) != Move.NO_MOVE) {
+				return;
+			}
+			
+			clearTermination();
+			isPondering = true;
+			isPonderingStopped = false;
+			ponderBoard = board;
+			ponderResult = null;
+			ponderThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					ponderResult = search(board);
+				}
+			}, "AlphaBetaPruning ponder");
+			ponderThread.setDaemon(true);
+			ponderThread.start();
+		}
+	}
+	
+	public boolean isPondering() {
+		return ponderThread != null;
+	}
+	
+	/**
+	 * Stops the background search started by {@link #startPondering()}, if
+	 * any, and waits for it to end. If a search has taken the background
+	 * search over, this waits for that search, so it should be terminated
+	 * first.
+	 */
+	public void stopPondering() {
+		synchronized (ponderLock) {
+			if (ponderThread == null) {
+				return;
+			}
+			
+			isPonderingStopped = true;
+			joinPonderThread();
+		}
+	}
+	
+	/**
+	 * @return the result of the background search if it searched the current
+	 *         board, or null if it did not or there was none
+	 */
+	private Move finishPondering() {
+		synchronized (ponderLock) {
+			if (ponderThread == null) {
+				return null;
+			}
+			
+			if (boardState.getBoardID() != ponderBoard.getBoardID()) {
+				stopPondering();
+				return null;
+			}
+			
+			timeManager.ponderHit(maxTime);
+			isPondering = false;
+			
+			joinPonderThread();
+			return ponderResult;
+		}
+	}
+	
+	private void joinPonderThread() {
+		try {
+			ponderThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		ponderThread = null;
+		ponderBoard = null;
+		isPondering = false;
+	}
+	
 	public synchronized void terminateSearch() {
 		doTerminateMove = true;
+		
+		for (AlphaBetaPruning helper : helpers) {
+			helper.terminateSearch();
+		}
+	}
+	
+	/**
+	 * Lets the next search run after {@link #terminateSearch()}. Callers that
+	 * terminate searches from another thread call it before starting a
+	 * search, in step with their calls to {@link #terminateSearch()}, so that
+	 * no termination meant for that search is lost.
+	 */
+	public synchronized void clearTermination() {
+		doTerminateMove = false;
 	}
 }
@@ -0,0 +1,80 @@
+package game.ninemensmorris.algorithms;
+
+import game.ninemensmorris.model.Move;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of a search after one of its iterations.
+ */
+public class SearchInfo {
+	private final int depth;
+	private final int value;
+	private final List<Move> principalVariation;
+	private final long numberOfNodes;
+	private final long elapsedTime;
+
+	public SearchInfo(int depth, int value, int[] principalVariation, long numberOfNodes, long elapsedTime) {
+		List<Move> moves = new ArrayList<Move>(principalVariation.length);
+		for (int move : principalVariation) {
+			moves.add(Move.decode(move));
+		}
+
+		this.depth = depth;
+		this.value = value;
+		this.principalVariation = Collections.unmodifiableList(moves);
+		this.numberOfNodes = numberOfNodes;
+		this.elapsedTime = elapsedTime;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return the value of the board for the player on move
+	 */
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the expected moves from the searched board, as far as the
+	 *         transposition table keeps them
+	 */
+	public List<Move> getPrincipalVariation() {
+		return principalVariation;
+	}
+
+	/**
+	 * @return the number of nodes visited by all threads so far
+	 */
+	public long getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	/**
+	 * @return the time since the start of the search in milliseconds
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public long getNodesPerSecond() {
+		return numberOfNodes * 1000 / Math.max(elapsedTime, 1);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append("depth ").append(depth).append(" value ").append(value).append(" nodes ").append(numberOfNodes)
+				.append(" nps ").append(getNodesPerSecond()).append(" time ").append(elapsedTime).append(" pv");
+		for (Move move : principalVariation) {
+			result.append(' ').append(move);
+		}
+
+		return result.toString();
+	}
+}
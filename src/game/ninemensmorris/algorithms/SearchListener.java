@@ -0,0 +1,9 @@
+package game.ninemensmorris.algorithms;
+
+/**
+ * Receives the progress of {@link AlphaBetaPruning#searchForBestMove()} on
+ * the searching thread.
+ */
+public interface SearchListener {
+	public void iterationFinished(SearchInfo info);
+}
@@ -0,0 +1,90 @@
+package game.ninemensmorris.algorithms;
+
+/**
+ * Decides how long an iterative deepening search runs. The maximal time is a
+ * hard limit checked during the iterations. A new iteration is only started
+ * before the soft limit, a fraction of the maximal time that grows whenever
+ * the best move changes, and if the growth of the last iterations predicts
+ * that it ends before the hard limit, so that little time is spent on
+ * iterations that are cut off.
+ */
+public class TimeManager {
+	private static final int SOFT_LIMIT_PERCENT = 40;
+	private static final int UNSTABLE_EXTENSION_PERCENT = 50;
+	private static final double DEFAULT_BRANCHING_FACTOR = 3;
+	private static final double MAX_BRANCHING_FACTOR = 6;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+
+	private long startTime;
+	private long hardLimit;
+	private long softLimit;
+	private long iterationStartTime;
+	private long lastIterationTime;
+
+	public TimeManager() {
+		start(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Starts the clock of a new search.
+	 * 
+	 * @param maxTime the hard limit in milliseconds
+	 */
+	public void start(int maxTime) {
+		setLimits(maxTime);
+		iterationStartTime = startTime;
+		lastIterationTime = 0;
+	}
+
+	/**
+	 * Restarts the clock of a search that has run without limits, keeping the
+	 * times of its iterations.
+	 */
+	public void ponderHit(int maxTime) {
+		setLimits(maxTime);
+	}
+
+	private void setLimits(int maxTime) {
+		startTime = System.nanoTime();
+		hardLimit = maxTime * NANOSECONDS_PER_MILLISECOND;
+		softLimit = hardLimit * SOFT_LIMIT_PERCENT / 100;
+	}
+
+	public boolean isHardLimitReached() {
+		return System.nanoTime() - startTime >= hardLimit;
+	}
+
+	/**
+	 * @return the time since the start in milliseconds
+	 */
+	public long getElapsedTime() {
+		return (System.nanoTime() - startTime) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	/**
+	 * @param hasBestMoveChanged whether the iteration chose another best move
+	 *        than the one before
+	 * @return whether the next iteration should be started
+	 */
+	public boolean iterationFinished(boolean hasBestMoveChanged) {
+		long now = System.nanoTime();
+		long iterationTime = now - iterationStartTime;
+		// Iterations answered by the transposition table take no measurable
+		// time and say nothing about the growth of the next ones.
+		double branchingFactor = DEFAULT_BRANCHING_FACTOR;
+		if (lastIterationTime >= NANOSECONDS_PER_MILLISECOND) {
+			branchingFactor = Math.min(Math.max((double) iterationTime / lastIterationTime, 1), MAX_BRANCHING_FACTOR);
+		}
+		iterationStartTime = now;
+		lastIterationTime = iterationTime;
+
+		if (hasBestMoveChanged) {
+			softLimit = Math.min(softLimit + hardLimit * SOFT_LIMIT_PERCENT / 100 * UNSTABLE_EXTENSION_PERCENT / 100, hardLimit);
+		}
+
+		long elapsedTime = now - startTime;
+		long predictedIterationTime = (long) (iterationTime * branchingFactor);
+
+		return elapsedTime < softLimit && elapsedTime + predictedIterationTime < hardLimit;
+	}
+}
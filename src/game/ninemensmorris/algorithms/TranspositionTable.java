@@ -0,0 +1,260 @@
+package game.ninemensmorris.algorithms;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.Move;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-size transposition table preallocated as a single long array.
+ * <p>
+ * The table is split into buckets of two entries. The first entry of a bucket
+ * is only replaced by a search of at least the same depth or by a search from
+ * a newer generation, the second one is always replaced. Every entry takes two
+ * longs: the packed data and the key XOR-ed with it. A probe only succeeds if
+ * both longs belong to the same store, so concurrent searches can share the
+ * table without locking and a torn entry is treated as a miss.
+ * <p>
+ * The table can be saved to a snapshot file and warm-started from it. The
+ * snapshot holds a header of the magic number, the format version, the
+ * {@link BoardState#BOARD_ID_SCHEME board ID scheme} and the generation,
+ * followed by the non-empty entries as they are stored in the table, so it
+ * can be loaded into a table of any size.
+ */
+public class TranspositionTable {
+	public static final long NOT_FOUND = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+	public static final int EXACT = 3;
+
+	public static final int DEFAULT_SIZE_IN_MB = 64;
+
+	private static final int ENTRIES_PER_BUCKET = 2;
+	private static final int LONGS_PER_ENTRY = 2;
+	private static final int LONGS_PER_BUCKET = ENTRIES_PER_BUCKET * LONGS_PER_ENTRY;
+	private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * 8;
+
+	private static final int MOVE_SHIFT = 16;
+	private static final int DEPTH_SHIFT = 32;
+	private static final int BOUND_SHIFT = 40;
+	private static final int GENERATION_SHIFT = 42;
+	private static final int MAX_DEPTH = 0xFF;
+	private static final int GENERATION_MASK = 0xFF;
+
+	private static final int SNAPSHOT_MAGIC = 0x4E4D5454;
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int SNAPSHOT_HEADER_SIZE = 20;
+	private static final int SNAPSHOT_BUFFER_SIZE = 1 << 20;
+
+	private final long[] table;
+	private final int bucketMask;
+	private int generation;
+
+	public TranspositionTable(int sizeInMB) {
+		this(sizeInMB, 1024 * 1024);
+	}
+
+	private TranspositionTable(int size, int bytesPerUnit) {
+		if (size <= 0) {
+			throw new IllegalArgumentException();
+		}
+
+		long buckets = Long.highestOneBit((long) size * bytesPerUnit / BYTES_PER_BUCKET);
+		buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / LONGS_PER_BUCKET));
+
+		this.table = new long[(int) buckets * LONGS_PER_BUCKET];
+		this.bucketMask = (int) buckets - 1;
+		this.generation = 0;
+	}
+
+	/**
+	 * @return a table of the given size in kilobytes, for tables of less than
+	 *         a megabyte
+	 */
+	public static TranspositionTable newTableOfSizeInKB(int sizeInKB) {
+		return new TranspositionTable(sizeInKB, 1024);
+	}
+
+	public int getSizeInMB() {
+		return (int) ((long) table.length * 8 / (1024 * 1024));
+	}
+
+	/**
+	 * Starts a new search generation, so that entries from previous searches
+	 * give way to new ones regardless of their depth.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	public void clear() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = 0;
+		}
+	}
+
+	private int getBucketIndex(long key) {
+		return ((int) (key ^ (key >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+	}
+
+	/**
+	 * @return the stored entry, to be decoded with the static getters, or
+	 *         {@link #NOT_FOUND}
+	 */
+	public long probe(long key) {
+		int index = getBucketIndex(key);
+
+		for (int i = index; i < index + LONGS_PER_BUCKET; i += LONGS_PER_ENTRY) {
+			long data = table[i + 1];
+			if (data != NOT_FOUND && (table[i] ^ data) == key) {
+				return data;
+			}
+		}
+
+		return NOT_FOUND;
+	}
+
+	public void store(long key, int value, int remainingDepth, int bound, int bestMove) {
+		put(key, encode(value, Math.min(remainingDepth, MAX_DEPTH), bound, bestMove, generation));
+	}
+
+	private void put(long key, long data) {
+		int index = getBucketIndex(key);
+
+		long depthPreferredData = table[index + 1];
+		if (depthPreferredData == NOT_FOUND
+				|| (table[index] ^ depthPreferredData) == key
+				|| getGeneration(depthPreferredData) != generation
+				|| getRemainingDepth(depthPreferredData) <= getRemainingDepth(data)) {
+			table[index] = key ^ data;
+			table[index + 1] = data;
+		} else {
+			table[index + LONGS_PER_ENTRY] = key ^ data;
+			table[index + LONGS_PER_ENTRY + 1] = data;
+		}
+	}
+
+	/**
+	 * Writes the non-empty entries to the file. The table may be used by a
+	 * search meanwhile; an entry torn by it is loaded under a key that no
+	 * board has.
+	 */
+	public void save(File file) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+
+		try {
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+			buffer.putInt(SNAPSHOT_MAGIC);
+			buffer.putInt(SNAPSHOT_VERSION);
+			buffer.putLong(BoardState.BOARD_ID_SCHEME);
+			buffer.putInt(generation);
+
+			for (int i = 0; i < table.length; i += LONGS_PER_ENTRY) {
+				long check = table[i];
+				long data = table[i + 1];
+				if (data == NOT_FOUND) {
+					continue;
+				}
+
+				if (buffer.remaining() < LONGS_PER_ENTRY * 8) {
+					writeFully(channel, buffer);
+				}
+				buffer.putLong(check);
+				buffer.putLong(data);
+			}
+
+			writeFully(channel, buffer);
+		} finally {
+			output.close();
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Adds the entries of a snapshot to the table, replacing entries as
+	 * {@link #store} does, and continues from the generation of the snapshot.
+	 * 
+	 * @throws IOException if the file cannot be read, is not a snapshot or
+	 *         was saved with different board IDs
+	 */
+	public void load(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+
+		try {
+			FileChannel channel = input.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+
+			while (buffer.position() < SNAPSHOT_HEADER_SIZE && channel.read(buffer) != -1) {
+			}
+			buffer.flip();
+			if (buffer.remaining() < SNAPSHOT_HEADER_SIZE || buffer.getInt() != SNAPSHOT_MAGIC
+					|| buffer.getInt() != SNAPSHOT_VERSION) {
+				throw new IOException("Not a transposition table snapshot: " + file);
+			}
+			if (buffer.getLong() != BoardState.BOARD_ID_SCHEME) {
+				throw new IOException("The snapshot " + file + " was saved with different board IDs");
+			}
+			generation = buffer.getInt() & GENERATION_MASK;
+
+			while (true) {
+				while (buffer.remaining() >= LONGS_PER_ENTRY * 8) {
+					long check = buffer.getLong();
+					long data = buffer.getLong();
+					put(check ^ data, data);
+				}
+
+				buffer.compact();
+				if (channel.read(buffer) == -1) {
+					break;
+				}
+				buffer.flip();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private static long encode(int value, int remainingDepth, int bound, int bestMove, int generation) {
+		return (value & 0xFFFFL)
+				| ((long) ((bestMove + 1) & 0xFFFF) << MOVE_SHIFT)
+				| ((long) remainingDepth << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT)
+				| ((long) generation << GENERATION_SHIFT);
+	}
+
+	public static int getValue(long entry) {
+		return (short) entry;
+	}
+
+	/**
+	 * @return the encoded best move or {@link Move#NO_MOVE}
+	 */
+	public static int getBestMove(long entry) {
+		return (int) ((entry >>> MOVE_SHIFT) & 0xFFFF) - 1;
+	}
+
+	public static int getRemainingDepth(long entry) {
+		return (int) ((entry >>> DEPTH_SHIFT) & MAX_DEPTH);
+	}
+
+	public static int getBound(long entry) {
+		return (int) ((entry >>> BOUND_SHIFT) & 0x3);
+	}
+
+	private static int getGeneration(long entry) {
+		return (int) ((entry >>> GENERATION_SHIFT) & GENERATION_MASK);
+	}
+}
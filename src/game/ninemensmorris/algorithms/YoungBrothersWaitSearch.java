@@ -0,0 +1,409 @@
+package game.ninemensmorris.algorithms;
+
+import game.ninemensmorris.model.BoardEvaluationFunction;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.EvaluationWeights;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveEvaluationFunction;
+import game.ninemensmorris.model.MoveList;
+import game.ninemensmorris.model.SimpleMoveEvaluationFunction;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel alpha-beta search splitting the work with the Young Brothers Wait
+ * strategy. At every node with enough remaining depth the first move is
+ * searched serially and the remaining moves are then searched in parallel as
+ * fork/join tasks sharing the node's alpha. A cutoff in any of them aborts
+ * its siblings, and everything below them, through their split point.
+ * <p>
+ * The threads of the pool live until {@link #close()} is called.
+ */
+public class YoungBrothersWaitSearch {
+	private static final int INFINITY = 1001;
+	private static final int WIN_BOARD_VALUE = 1000;
+	private static final int END_SEARCH = 10000;
+	private static final int ABORT_SEARCH = 20000;
+	private static final int MIN_SPLIT_DEPTH = 4;
+	private static final int CLOCK_CHECK_INTERVAL = 1024;
+	private static final long NANOSECONDS_PER_MILLISECOND = 1000000;
+
+	private BoardState boardState;
+	private int maxDepth;
+	private int maxTime;
+	private long deadline;
+	private TranspositionTable transpositionTable;
+	private MoveEvaluationFunction moveEvaluationFunction;
+	private BoardEvaluationFunction boardEvaluationFunction;
+	private ForkJoinPool pool;
+	private volatile boolean doTerminateMove;
+	private volatile boolean isTimeUp;
+	private volatile int currentBestMove;
+	private int currentBestMoveValue;
+
+	public YoungBrothersWaitSearch(BoardState boardState, int maxDepth, int maxTime) {
+		this(boardState, maxDepth, maxTime, Runtime.getRuntime().availableProcessors());
+	}
+
+	public YoungBrothersWaitSearch(BoardState boardState, int maxDepth, int maxTime, int numberOfThreads) {
+		this.boardState = boardState;
+		this.maxDepth = maxDepth;
+		this.maxTime = maxTime;
+		this.moveEvaluationFunction = new SimpleMoveEvaluationFunction();
+		this.boardEvaluationFunction = EvaluationWeights.DEFAULT;
+		this.transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MB);
+		this.pool = new ForkJoinPool(numberOfThreads);
+		this.doTerminateMove = false;
+		this.isTimeUp = false;
+
+		this.deadline = 0;
+		this.currentBestMove = Move.NO_MOVE;
+		this.currentBestMoveValue = -INFINITY;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxTime(int maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	public int getMaxTime() {
+		return maxTime;
+	}
+
+	public int getNumberOfThreads() {
+		return pool.getParallelism();
+	}
+
+	public void setMoveEvaluationFunction(MoveEvaluationFunction moveEvaluationFunction) {
+		this.moveEvaluationFunction = moveEvaluationFunction;
+	}
+
+	public MoveEvaluationFunction getMoveEvaluationFunction() {
+		return moveEvaluationFunction;
+	}
+
+	/**
+	 * Sets the static evaluation of the leaves of the search, which must be
+	 * safe to call from several threads.
+	 */
+	public void setBoardEvaluationFunction(BoardEvaluationFunction boardEvaluationFunction) {
+		this.boardEvaluationFunction = boardEvaluationFunction;
+	}
+
+	public BoardEvaluationFunction getBoardEvaluationFunction() {
+		return boardEvaluationFunction;
+	}
+
+	/**
+	 * The move lists, indexed by remaining depth, and the clock check counter
+	 * of one task, so that neither is shared between threads. A task reads
+	 * the clock at its first node, as many tasks are smaller than the
+	 * interval.
+	 */
+	private static final class SearchStack {
+		private final MoveList[] moveLists;
+		private int nodesUntilClockCheck;
+
+		public SearchStack(int remainingDepth) {
+			this.moveLists = new MoveList[remainingDepth + 1];
+			for (int i = 0; i < moveLists.length; i++) {
+				moveLists[i] = new MoveList();
+			}
+			this.nodesUntilClockCheck = 1;
+		}
+	}
+
+	private static final class SplitPoint {
+		private final SplitPoint parent;
+		private volatile int alpha;
+		private volatile boolean aborted;
+
+		public SplitPoint(SplitPoint parent, int alpha) {
+			this.parent = parent;
+			this.alpha = alpha;
+			this.aborted = false;
+		}
+
+		public boolean isAborted() {
+			for (SplitPoint splitPoint = this; splitPoint != null; splitPoint = splitPoint.parent) {
+				if (splitPoint.aborted) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		public synchronized void raiseAlpha(int value) {
+			if (value > alpha) {
+				alpha = value;
+			}
+		}
+	}
+
+	private final class SiblingTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 2710385120566711398L;
+
+		private final BoardState board;
+		private final int beta;
+		private final int currentDepth;
+		private final int remainingDepth;
+		private final SplitPoint splitPoint;
+
+		public SiblingTask(BoardState board, int beta, int currentDepth, int remainingDepth, SplitPoint splitPoint) {
+			this.board = board;
+			this.beta = beta;
+			this.currentDepth = currentDepth;
+			this.remainingDepth = remainingDepth;
+			this.splitPoint = splitPoint;
+		}
+
+		@Override
+		protected Integer compute() {
+			int alpha = splitPoint.alpha;
+			int value = -search(board, -beta, -alpha, currentDepth + 1, remainingDepth - 1, splitPoint, new SearchStack(remainingDepth));
+
+			if (Math.abs(value) != END_SEARCH && Math.abs(value) != ABORT_SEARCH) {
+				if (value >= beta) {
+					splitPoint.aborted = true;
+				} else {
+					splitPoint.raiseAlpha(value);
+				}
+			}
+
+			return value;
+		}
+	}
+
+	/**
+	 * Reads the clock only every {@link #CLOCK_CHECK_INTERVAL} nodes of a
+	 * task. Once the time is up the search of all threads is terminated. Like
+	 * the time limit, a termination leaves the search at least one move to
+	 * play.
+	 */
+	private boolean shouldEndSearch(SearchStack stack) {
+		if (--stack.nodesUntilClockCheck <= 0) {
+			stack.nodesUntilClockCheck = CLOCK_CHECK_INTERVAL;
+
+			if (System.nanoTime() - deadline > 0 && currentBestMove != Move.NO_MOVE) {
+				isTimeUp = true;
+			}
+		}
+
+		return isTimeUp || (doTerminateMove && currentBestMove != Move.NO_MOVE);
+	}
+
+	/**
+	 * A task only needs move lists for the part of the tree it searches.
+	 */
+	private int search(BoardState board, int alpha, int beta, int currentDepth, int remainingDepth,
+			SplitPoint splitPoint, SearchStack stack) {
+		if (shouldEndSearch(stack)) {
+			return END_SEARCH;
+		}
+		if (splitPoint != null && splitPoint.isAborted()) {
+			return ABORT_SEARCH;
+		}
+
+		long boardComputedValue = transpositionTable.probe(board.getBoardID());
+		if (boardComputedValue != TranspositionTable.NOT_FOUND && currentDepth == 0
+				&& !board.isMoveValid(TranspositionTable.getBestMove(boardComputedValue))) {
+			boardComputedValue = TranspositionTable.NOT_FOUND;
+		}
+		if (boardComputedValue != TranspositionTable.NOT_FOUND
+				&& TranspositionTable.getRemainingDepth(boardComputedValue) >= remainingDepth) {
+			int value = TranspositionTable.getValue(boardComputedValue);
+			int bound = TranspositionTable.getBound(boardComputedValue);
+
+			if (bound == TranspositionTable.LOWER_BOUND) {
+				alpha = Math.max(alpha, value);
+			}
+
+			if (bound == TranspositionTable.UPPER_BOUND) {
+				beta = Math.min(beta, value);
+			}
+
+			if (bound == TranspositionTable.EXACT || alpha >= beta) {
+				if (currentDepth == 0) {
+					currentBestMove = TranspositionTable.getBestMove(boardComputedValue);
+					currentBestMoveValue = value;
+				}
+
+				return value;
+			}
+		}
+
+		MoveList moveList = stack.moveLists[remainingDepth];
+		board.generateValidMoves(moveList);
+		if (board.getRemainingPiecesOfCurrentPlayer() < 3 || moveList.isEmpty()) {
+			return -WIN_BOARD_VALUE;
+		}
+
+		if (remainingDepth == 0) {
+			return boardEvaluationFunction.evaluate(board);
+		}
+
+		AlphaBetaPruning.scoreMoves(board, moveEvaluationFunction, moveList);
+
+		int nodeBestMove = Move.NO_MOVE;
+		int nodeBestValue = -INFINITY;
+		int numberOfSerialMoves = remainingDepth >= MIN_SPLIT_DEPTH ? 1 : moveList.size();
+
+		for (int i = 0; i < numberOfSerialMoves && moveList.hasNext() && alpha < beta; i++) {
+			int move = moveList.next();
+			board.makeMove(move);
+
+			int value = -search(board, -beta, -alpha, currentDepth + 1, remainingDepth - 1, splitPoint, stack);
+
+			board.undoMove(move);
+
+			if (Math.abs(value) == END_SEARCH || Math.abs(value) == ABORT_SEARCH) {
+				return Math.abs(value);
+			}
+
+			if (value > nodeBestValue) {
+				nodeBestValue = value;
+				nodeBestMove = move;
+			}
+
+			if (value > alpha) {
+				alpha = value;
+
+				if (currentDepth == 0) {
+					currentBestMove = move;
+					currentBestMoveValue = alpha;
+				}
+			}
+		}
+
+		if (moveList.hasNext() && alpha < beta) {
+			SplitPoint childSplitPoint = new SplitPoint(splitPoint, alpha);
+			int[] siblingMoves = new int[moveList.size() - numberOfSerialMoves];
+			SiblingTask[] tasks = new SiblingTask[siblingMoves.length];
+
+			for (int i = 0; i < tasks.length; i++) {
+				siblingMoves[i] = moveList.next();
+				BoardState childBoard = new BoardState(board);
+				childBoard.makeMove(siblingMoves[i]);
+				tasks[i] = new SiblingTask(childBoard, beta, currentDepth, remainingDepth, childSplitPoint);
+			}
+
+			RecursiveTask.invokeAll(tasks);
+
+			boolean isAborted = false;
+			for (int i = 0; i < tasks.length; i++) {
+				int value = tasks[i].join();
+
+				if (Math.abs(value) == END_SEARCH) {
+					return END_SEARCH;
+				}
+				if (Math.abs(value) == ABORT_SEARCH) {
+					isAborted = true;
+					continue;
+				}
+
+				if (value > nodeBestValue) {
+					nodeBestValue = value;
+					nodeBestMove = siblingMoves[i];
+				}
+
+				if (value > alpha) {
+					alpha = value;
+
+					if (currentDepth == 0) {
+						currentBestMove = siblingMoves[i];
+						currentBestMoveValue = alpha;
+					}
+				}
+			}
+
+			// Siblings are only aborted by a cutoff below this node or by one of
+			// the split points above it, in which case the result is useless.
+			if (isAborted && alpha < beta) {
+				return ABORT_SEARCH;
+			}
+		}
+
+		int bound = TranspositionTable.EXACT;
+		if (alpha >= beta) {
+			bound = TranspositionTable.LOWER_BOUND;
+		} else if (nodeBestValue < alpha) {
+			bound = TranspositionTable.UPPER_BOUND;
+		}
+		transpositionTable.store(board.getBoardID(), nodeBestValue, remainingDepth, bound, nodeBestMove);
+
+		return nodeBestValue;
+	}
+
+	/**
+	 * Searches the board for the best move. A termination requested by
+	 * {@link #terminateSearch()} also ends the later searches until
+	 * {@link #clearTermination()} is called.
+	 */
+	public Move searchForBestMove() {
+		currentBestMove = Move.NO_MOVE;
+		currentBestMoveValue = -INFINITY;
+		deadline = System.nanoTime() + maxTime * NANOSECONDS_PER_MILLISECOND;
+		isTimeUp = false;
+		transpositionTable.newSearch();
+
+		final BoardState currentBoard = new BoardState(boardState);
+		final SearchStack stack = new SearchStack(maxDepth);
+		int prevBestMove = currentBestMove;
+		int prevBestMoveValue = currentBestMoveValue;
+
+		for (int depth = Math.min(2, maxDepth); depth <= maxDepth; depth += 2) {
+			final int searchDepth = depth;
+			int value = pool.invoke(new RecursiveTask<Integer>() {
+				private static final long serialVersionUID = -4224496213361325071L;
+
+				@Override
+				protected Integer compute() {
+					return search(currentBoard, -INFINITY, INFINITY, 0, searchDepth, null, stack);
+				}
+			});
+
+			if (Math.abs(value) == END_SEARCH) {
+				if (currentBestMoveValue <= prevBestMoveValue) {
+					currentBestMove = prevBestMove;
+					currentBestMoveValue = prevBestMoveValue;
+				}
+
+				break;
+			}
+
+			prevBestMove = currentBestMove;
+			prevBestMoveValue = value;
+		}
+
+		return Move.decode(currentBestMove);
+	}
+
+	public synchronized void terminateSearch() {
+		doTerminateMove = true;
+	}
+
+	/**
+	 * Lets the next search run after {@link #terminateSearch()}, as
+	 * {@link AlphaBetaPruning#clearTermination()} does.
+	 */
+	public synchronized void clearTermination() {
+		doTerminateMove = false;
+	}
+
+	/**
+	 * Shuts the threads of the pool down. The search cannot be used
+	 * afterwards.
+	 */
+	public void close() {
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,122 @@
+package game.ninemensmorris.book;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.BoardSymmetry;
+import game.ninemensmorris.model.Move;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Best moves of the positions of the first plies, keyed by the canonical
+ * board ID, so that symmetric positions share one entry. The moves are stored
+ * in the orientation of the canonical board.
+ * <p>
+ * The file starts with the magic number, the format version, the
+ * {@link BoardState#BOARD_ID_SCHEME board ID scheme} and the number of
+ * entries, followed by the entries sorted by key, each of them a key and an
+ * encoded move.
+ */
+public class OpeningBook {
+	private static final int MAGIC = 0x4E4D4D42;
+	private static final int VERSION = 2;
+
+	private final long[] keys;
+	private final char[] moves;
+
+	/**
+	 * @param keys canonical board IDs in increasing order
+	 * @param moves the best moves of the canonical boards
+	 */
+	public OpeningBook(long[] keys, int[] moves) {
+		if (keys.length != moves.length) {
+			throw new IllegalArgumentException();
+		}
+
+		this.keys = keys.clone();
+		this.moves = new char[moves.length];
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0 && keys[i - 1] >= keys[i]) {
+				throw new IllegalArgumentException("The keys are not sorted");
+			}
+
+			this.moves[i] = (char) moves[i];
+		}
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @return the book move of the position or {@link Move#NO_MOVE} if it is
+	 *         not in the book
+	 */
+	public int getMove(BoardState board) {
+		int symmetry = board.getCanonicalSymmetry();
+		int entry = Arrays.binarySearch(keys, board.getBoardID(symmetry));
+		if (entry < 0) {
+			return Move.NO_MOVE;
+		}
+
+		int move = BoardSymmetry.transformMove(BoardSymmetry.getInverse(symmetry), moves[entry]);
+		return board.isMoveValid(move) ? move : Move.NO_MOVE;
+	}
+
+	public static OpeningBook read(File file) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+		try {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("Not an opening book: " + file);
+			}
+			if (input.readLong() != BoardState.BOARD_ID_SCHEME) {
+				throw new IOException("The opening book " + file + " was generated with different board IDs");
+			}
+
+			int size = input.readInt();
+			if (size < 0) {
+				throw new IOException("Corrupted opening book: " + file);
+			}
+
+			long[] keys = new long[size];
+			int[] moves = new int[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = input.readLong();
+				moves[i] = input.readChar();
+			}
+
+			try {
+				return new OpeningBook(keys, moves);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Corrupted opening book: " + file, e);
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	public void write(File file) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+		try {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeLong(BoardState.BOARD_ID_SCHEME);
+			output.writeInt(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				output.writeLong(keys[i]);
+				output.writeChar(moves[i]);
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package game.ninemensmorris.book;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.TranspositionTable;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.BoardSymmetry;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Builds an opening book by searching every position reachable in the given
+ * number of plies to a fixed depth. Symmetric positions are searched once.
+ * <p>
+ * Usage: OpeningBookGenerator file plies depth [threads]
+ */
+public class OpeningBookGenerator {
+	private final int numberOfPlies;
+	private final int depth;
+	private final int numberOfThreads;
+	private final TranspositionTable transpositionTable;
+
+	public OpeningBookGenerator(int numberOfPlies, int depth, int numberOfThreads) {
+		if (numberOfPlies < 1 || depth < 1 || numberOfThreads < 1) {
+			throw new IllegalArgumentException();
+		}
+
+		this.numberOfPlies = numberOfPlies;
+		this.depth = depth;
+		this.numberOfThreads = numberOfThreads;
+		this.transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MB);
+	}
+
+	/**
+	 * @return the canonical boards of every ply before the given number of
+	 *         plies on which the player on move has not lost
+	 */
+	private List<BoardState> getPositions() {
+		List<BoardState> result = new ArrayList<BoardState>();
+		List<BoardState> ply = new ArrayList<BoardState>();
+		ply.add(new BoardState());
+
+		for (int i = 0; i < numberOfPlies; i++) {
+			List<BoardState> nextPly = new ArrayList<BoardState>();
+			Set<Long> nextPlyKeys = new HashSet<Long>();
+			MoveList moveList = new MoveList();
+
+			for (BoardState board : ply) {
+				if (board.hasCurrentPlayerLost()) {
+					continue;
+				}
+				result.add(board);
+
+				board.generateValidMoves(moveList);
+				for (int j = 0; j < moveList.size(); j++) {
+					BoardState nextBoard = new BoardState(board);
+					nextBoard.makeMove(moveList.getMove(j));
+
+					if (nextPlyKeys.add(nextBoard.getCanonicalBoardID())) {
+						nextPly.add(nextBoard);
+					}
+				}
+			}
+
+			ply = nextPly;
+		}
+
+		return result;
+	}
+
+	public OpeningBook generate() {
+		List<BoardState> positions = getPositions();
+		Map<Long, Integer> entries = new TreeMap<Long, Integer>();
+		long startTime = System.currentTimeMillis();
+		int numberOfSearchedPositions = 0;
+
+		for (BoardState board : positions) {
+			AlphaBetaPruning search = new AlphaBetaPruning(board, depth, Integer.MAX_VALUE, transpositionTable);
+			search.setSymmetryReduction(true);
+			search.setNumberOfThreads(numberOfThreads);
+
+			Move move = search.searchForBestMove();
+			if (move != null) {
+				int symmetry = board.getCanonicalSymmetry();
+				entries.put(board.getBoardID(symmetry), BoardSymmetry.transformMove(symmetry, move.encode()));
+			}
+
+			if (++numberOfSearchedPositions % 100 == 0) {
+				System.out.println(numberOfSearchedPositions + " of " + positions.size() + " positions searched in "
+						+ (System.currentTimeMillis() - startTime) / 1000 + " s");
+			}
+		}
+
+		long[] keys = new long[entries.size()];
+		int[] moves = new int[entries.size()];
+		int i = 0;
+		for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+			keys[i] = entry.getKey();
+			moves[i] = entry.getValue();
+			i++;
+		}
+
+		return new OpeningBook(keys, moves);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 && args.length != 4) {
+			System.err.println("Usage: OpeningBookGenerator file plies depth [threads]");
+			System.exit(2);
+		}
+
+		int numberOfThreads = args.length == 4 ? Integer.parseInt(args[3]) : 1;
+		OpeningBookGenerator generator = new OpeningBookGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), numberOfThreads);
+
+		OpeningBook book = generator.generate();
+		book.write(new File(args[0]));
+		System.out.println("Wrote " + book.size() + " positions to " + args[0]);
+	}
+}
@@ -0,0 +1,156 @@
+package game.ninemensmorris.endgame;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveList;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Solved positions of the moving phase, when neither player has pieces left
+ * to put. The positions are split in subspaces by the number of pieces of
+ * the player on move and of the other player. The rules do not depend on the
+ * colour, so a subspace holds the positions of both colours.
+ * <p>
+ * A value is {@link #DRAW} if neither player can force a win, otherwise it is
+ * the number of plies to the end of the game with perfect play plus one. An
+ * odd number of plies is a win for the player on move and an even one is a
+ * loss.
+ */
+public class EndgameDatabase {
+	public static final int UNKNOWN = -1;
+	public static final int DRAW = 0;
+	public static final int MIN_PIECES = 3;
+
+	private final EndgameTable[][] tables;
+
+	public EndgameDatabase() {
+		tables = new EndgameTable[BoardState.NUMBER_OF_STARTING_PIECES + 1][BoardState.NUMBER_OF_STARTING_PIECES + 1];
+	}
+
+	/**
+	 * Maps every table found in the directory, see
+	 * {@link EndgameTable#map(File)}.
+	 */
+	public static EndgameDatabase load(File directory) throws IOException {
+		EndgameDatabase result = new EndgameDatabase();
+
+		for (int moverCount = MIN_PIECES; moverCount <= BoardState.NUMBER_OF_STARTING_PIECES; moverCount++) {
+			for (int otherCount = MIN_PIECES; otherCount <= BoardState.NUMBER_OF_STARTING_PIECES; otherCount++) {
+				File file = new File(directory, EndgameTable.getFileName(moverCount, otherCount));
+
+				if (file.isFile()) {
+					result.addTable(EndgameTable.map(file));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	static boolean isSubspaceValid(int moverCount, int otherCount) {
+		return moverCount >= MIN_PIECES && moverCount <= BoardState.NUMBER_OF_STARTING_PIECES
+				&& otherCount >= MIN_PIECES && otherCount <= BoardState.NUMBER_OF_STARTING_PIECES;
+	}
+
+	public void addTable(EndgameTable table) {
+		tables[table.getMoverCount()][table.getOtherCount()] = table;
+	}
+
+	public EndgameTable getTable(int moverCount, int otherCount) {
+		if (!isSubspaceValid(moverCount, otherCount)) {
+			return null;
+		}
+
+		return tables[moverCount][otherCount];
+	}
+
+	/**
+	 * @return the value of the position or {@link #UNKNOWN} if the position
+	 *         is not in the moving phase or its table is not loaded
+	 */
+	public int probe(BoardState board) {
+		if (board.getUnputPiecesOfCurrentPlayer() > 0 || board.getUnputPiecesOfOtherPlayer() > 0) {
+			return UNKNOWN;
+		}
+
+		if (board.getRemainingPiecesOfCurrentPlayer() < MIN_PIECES) {
+			return getValueOfDistance(0);
+		}
+
+		EndgameTable table = getTable(board.getRemainingPiecesOfCurrentPlayer(), board.getRemainingPiecesOfOtherPlayer());
+		if (table == null) {
+			return UNKNOWN;
+		}
+
+		return table.getValue(board.getPiecesOfPlayer(board.getCurrentPlayer()), board.getPiecesOfPlayer(board.getOtherPlayer()));
+	}
+
+	/**
+	 * @return the move leading to the fastest win, to a draw or to the
+	 *         slowest loss, or {@link Move#NO_MOVE} if the position or one of
+	 *         its successors is not in the database
+	 */
+	public int getBestMove(BoardState board) {
+		if (probe(board) == UNKNOWN) {
+			return Move.NO_MOVE;
+		}
+
+		BoardState currentBoard = new BoardState(board);
+		MoveList moveList = new MoveList();
+		currentBoard.generateValidMoves(moveList);
+
+		int bestMove = Move.NO_MOVE;
+		int bestScore = Integer.MIN_VALUE;
+
+		for (int i = 0; i < moveList.size(); i++) {
+			int move = moveList.getMove(i);
+
+			currentBoard.makeMove(move);
+			int value = probe(currentBoard);
+			currentBoard.undoMove(move);
+
+			if (value == UNKNOWN) {
+				return Move.NO_MOVE;
+			}
+
+			int score = -getScore(value);
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+			}
+		}
+
+		return bestMove;
+	}
+
+	private static int getScore(int value) {
+		if (value == DRAW) {
+			return 0;
+		}
+
+		int score = Integer.MAX_VALUE - getDistance(value);
+		return isWin(value) ? score : -score;
+	}
+
+	public static boolean isWin(int value) {
+		return value != DRAW && getDistance(value) % 2 == 1;
+	}
+
+	public static boolean isLoss(int value) {
+		return value != DRAW && getDistance(value) % 2 == 0;
+	}
+
+	/**
+	 * @return the number of plies to the end of the game of a won or lost
+	 *         position
+	 */
+	public static int getDistance(int value) {
+		return value - 1;
+	}
+
+	static int getValueOfDistance(int distance) {
+		return distance + 1;
+	}
+}
@@ -0,0 +1,226 @@
+package game.ninemensmorris.endgame;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.BoardSymmetry;
+
+/**
+ * Symmetry reduced index of the positions of a subspace with a fixed number
+ * of pieces of the player on move and of the other player.
+ * <p>
+ * The sets of pieces of the player on move are split in classes of sets
+ * mapped to each other by the {@link BoardSymmetry board symmetries}, each
+ * represented by its smallest mask. A position is first transformed so that
+ * the pieces of the player on move become the representative of their class
+ * and, if several symmetries do that, so that the pieces of the other player
+ * get the lowest rank. The index is the class times the number of ways to
+ * place the other pieces plus the colexicographic rank of the other pieces
+ * among the empty positions. Symmetric positions get the same index, so a
+ * table needs about a sixteenth of the entries of an unreduced one. Some
+ * indices are never produced, see {@link #isCanonical(long)}.
+ */
+public final class EndgameIndex {
+	private static final int ALL_POSITIONS_MASK = (1 << BoardState.NUMBER_OF_POSITIONS) - 1;
+	private static final long[][] binomial;
+	private static final EndgameIndex[][] instances;
+	private static final int[][] moverClassesOfCount;
+	private static final char[][] moverSymmetriesOfCount;
+	private static final int[][] classMasksOfCount;
+
+	static {
+		binomial = new long[BoardState.NUMBER_OF_POSITIONS + 1][BoardState.NUMBER_OF_POSITIONS + 1];
+
+		for (int n = 0; n <= BoardState.NUMBER_OF_POSITIONS; n++) {
+			binomial[n][0] = 1;
+			for (int k = 1; k <= n; k++) {
+				binomial[n][k] = binomial[n - 1][k - 1] + binomial[n - 1][k];
+			}
+		}
+
+		instances = new EndgameIndex[BoardState.NUMBER_OF_POSITIONS + 1][BoardState.NUMBER_OF_POSITIONS + 1];
+		moverClassesOfCount = new int[BoardState.NUMBER_OF_POSITIONS + 1][];
+		moverSymmetriesOfCount = new char[BoardState.NUMBER_OF_POSITIONS + 1][];
+		classMasksOfCount = new int[BoardState.NUMBER_OF_POSITIONS + 1][];
+	}
+
+	private final int otherCount;
+	private final long numberOfOtherPositions;
+	private final int[] moverClasses;
+	private final char[] moverSymmetries;
+	private final int[] classMasks;
+
+	private EndgameIndex(int moverCount, int otherCount) {
+		if (moverClassesOfCount[moverCount] == null) {
+			computeClasses(moverCount);
+		}
+
+		this.otherCount = otherCount;
+		this.numberOfOtherPositions = binomial[BoardState.NUMBER_OF_POSITIONS - moverCount][otherCount];
+		this.moverClasses = moverClassesOfCount[moverCount];
+		this.moverSymmetries = moverSymmetriesOfCount[moverCount];
+		this.classMasks = classMasksOfCount[moverCount];
+	}
+
+	public static synchronized EndgameIndex getInstance(int moverCount, int otherCount) {
+		if (moverCount < 1 || otherCount < 0 || moverCount + otherCount > BoardState.NUMBER_OF_POSITIONS) {
+			throw new IllegalArgumentException();
+		}
+
+		if (instances[moverCount][otherCount] == null) {
+			instances[moverCount][otherCount] = new EndgameIndex(moverCount, otherCount);
+		}
+
+		return instances[moverCount][otherCount];
+	}
+
+	/**
+	 * Assigns every set of the given size, by its rank, its class and the
+	 * symmetries that map it to the representative of the class. Sets are
+	 * visited in increasing order, so the representative of a class is its
+	 * first set.
+	 */
+	private static void computeClasses(int count) {
+		int numberOfSets = (int) binomial[BoardState.NUMBER_OF_POSITIONS][count];
+		int[] moverClasses = new int[numberOfSets];
+		char[] moverSymmetries = new char[numberOfSets];
+		int[] classMasks = new int[numberOfSets];
+		int numberOfClasses = 0;
+		int rank = 0;
+
+		for (int mask = (1 << count) - 1; mask <= ALL_POSITIONS_MASK; mask = nextCombination(mask), rank++) {
+			int representative = mask;
+			int symmetries = 0;
+
+			for (int symmetry = 0; symmetry < BoardSymmetry.NUMBER_OF_SYMMETRIES; symmetry++) {
+				int transformed = BoardSymmetry.transform(symmetry, mask);
+
+				if (transformed < representative) {
+					representative = transformed;
+					symmetries = 0;
+				}
+				if (transformed == representative) {
+					symmetries |= 1 << symmetry;
+				}
+			}
+
+			if (representative == mask) {
+				classMasks[numberOfClasses] = mask;
+				moverClasses[rank] = numberOfClasses++;
+			} else {
+				moverClasses[rank] = moverClasses[(int) getRank(representative)];
+			}
+			moverSymmetries[rank] = (char) symmetries;
+		}
+
+		int[] usedClassMasks = new int[numberOfClasses];
+		System.arraycopy(classMasks, 0, usedClassMasks, 0, numberOfClasses);
+
+		moverClassesOfCount[count] = moverClasses;
+		moverSymmetriesOfCount[count] = moverSymmetries;
+		classMasksOfCount[count] = usedClassMasks;
+	}
+
+	public long getNumberOfPositions() {
+		return classMasks.length * numberOfOtherPositions;
+	}
+
+	public long getIndex(int moverPieces, int otherPieces) {
+		int moverRank = (int) getRank(moverPieces);
+		int representative = classMasks[moverClasses[moverRank]];
+		long otherRank = Long.MAX_VALUE;
+
+		for (int symmetries = moverSymmetries[moverRank]; symmetries != 0; symmetries &= symmetries - 1) {
+			int symmetry = Integer.numberOfTrailingZeros(symmetries);
+			otherRank = Math.min(otherRank, getRank(compact(BoardSymmetry.transform(symmetry, otherPieces), representative)));
+		}
+
+		return moverClasses[moverRank] * numberOfOtherPositions + otherRank;
+	}
+
+	public int getMoverPieces(long index) {
+		return classMasks[(int) (index / numberOfOtherPositions)];
+	}
+
+	public int getOtherPieces(long index) {
+		int compactPieces = unrank(index % numberOfOtherPositions, otherCount);
+
+		return deposit(compactPieces, ~getMoverPieces(index) & ALL_POSITIONS_MASK);
+	}
+
+	/**
+	 * @return whether the index is produced by {@link #getIndex(int, int)},
+	 *         which is not the case for a position with pieces of the player
+	 *         on move that are symmetric, if a symmetry of them gives the
+	 *         pieces of the other player a lower rank
+	 */
+	public boolean isCanonical(long index) {
+		return getIndex(getMoverPieces(index), getOtherPieces(index)) == index;
+	}
+
+	/**
+	 * @return the next mask with the same number of bits in numeric order
+	 */
+	private static int nextCombination(int mask) {
+		int lowestBit = mask & -mask;
+		int ripple = mask + lowestBit;
+
+		return (((ripple ^ mask) >>> 2) / lowestBit) | ripple;
+	}
+
+	/**
+	 * Spreads the low bits of the given mask over the set bits of positions,
+	 * the lowest bit going to the lowest position.
+	 */
+	private static int deposit(int mask, int positions) {
+		int result = 0;
+
+		for (; mask != 0; mask >>>= 1, positions &= positions - 1) {
+			if ((mask & 1) != 0) {
+				result |= positions & -positions;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Removes the positions taken by the excluded pieces from the mask,
+	 * shifting the higher positions down. The inverse of {@link #deposit}.
+	 */
+	private static int compact(int mask, int excludedPieces) {
+		int result = 0;
+
+		for (; mask != 0; mask &= mask - 1) {
+			int position = Integer.numberOfTrailingZeros(mask);
+			result |= 1 << (position - Integer.bitCount(excludedPieces & ((1 << position) - 1)));
+		}
+
+		return result;
+	}
+
+	private static long getRank(int mask) {
+		long result = 0;
+
+		for (int k = 1; mask != 0; mask &= mask - 1, k++) {
+			result += binomial[Integer.numberOfTrailingZeros(mask)][k];
+		}
+
+		return result;
+	}
+
+	private static int unrank(long rank, int count) {
+		int result = 0;
+		int position = BoardState.NUMBER_OF_POSITIONS - 1;
+
+		for (int k = count; k > 0; k--) {
+			while (binomial[position][k] > rank) {
+				position--;
+			}
+
+			result |= 1 << position;
+			rank -= binomial[position][k];
+			position--;
+		}
+
+		return result;
+	}
+}
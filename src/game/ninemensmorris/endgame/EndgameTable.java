@@ -0,0 +1,142 @@
+package game.ninemensmorris.endgame;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Solved values of all positions of one subspace, one byte per position in
+ * the order of its {@link EndgameIndex}. The values are described in
+ * {@link EndgameDatabase}.
+ * <p>
+ * The file starts with a header of the magic number, the format version, the
+ * number of pieces of the player on move and of the other player and the
+ * number of positions, followed by the values. A table read from a file is
+ * memory mapped rather than loaded, so its pages are only read when they are
+ * probed and are shared through the page cache by all processes using the
+ * same file.
+ */
+public class EndgameTable {
+	private static final int MAGIC = 0x4E4D4D45;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 24;
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private final int moverCount;
+	private final int otherCount;
+	private final EndgameIndex index;
+	private final ByteBuffer[] chunks;
+
+	private EndgameTable(int moverCount, int otherCount, ByteBuffer[] chunks) {
+		this.moverCount = moverCount;
+		this.otherCount = otherCount;
+		this.index = EndgameIndex.getInstance(moverCount, otherCount);
+		this.chunks = chunks;
+	}
+
+	public EndgameTable(int moverCount, int otherCount, byte[] values) {
+		this(moverCount, otherCount, new ByteBuffer[getNumberOfChunks(values.length)]);
+
+		if (values.length != index.getNumberOfPositions()) {
+			throw new IllegalArgumentException();
+		}
+
+		for (int i = 0; i < chunks.length; i++) {
+			long offset = (long) i << CHUNK_BITS;
+			chunks[i] = ByteBuffer.wrap(values, (int) offset, (int) Math.min(values.length - offset, CHUNK_MASK + 1)).slice();
+		}
+	}
+
+	private static int getNumberOfChunks(long numberOfPositions) {
+		return (int) ((numberOfPositions + CHUNK_MASK) >>> CHUNK_BITS);
+	}
+
+	public static String getFileName(int moverCount, int otherCount) {
+		return "morris-" + moverCount + "-" + otherCount + ".egdb";
+	}
+
+	public int getMoverCount() {
+		return moverCount;
+	}
+
+	public int getOtherCount() {
+		return otherCount;
+	}
+
+	public EndgameIndex getIndex() {
+		return index;
+	}
+
+	public int getValue(long positionIndex) {
+		return chunks[(int) (positionIndex >>> CHUNK_BITS)].get((int) (positionIndex & CHUNK_MASK)) & 0xFF;
+	}
+
+	public int getValue(int moverPieces, int otherPieces) {
+		return getValue(index.getIndex(moverPieces, otherPieces));
+	}
+
+	/**
+	 * Maps the table file into memory without reading the values.
+	 */
+	public static EndgameTable map(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+
+		try {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				throw new IOException("Not an endgame table: " + file);
+			}
+
+			int moverCount = input.readInt();
+			int otherCount = input.readInt();
+			long numberOfPositions = input.readLong();
+			if (!EndgameDatabase.isSubspaceValid(moverCount, otherCount)
+					|| numberOfPositions != EndgameIndex.getInstance(moverCount, otherCount).getNumberOfPositions()
+					|| input.length() != HEADER_SIZE + numberOfPositions) {
+				throw new IOException("Corrupted endgame table: " + file);
+			}
+
+			FileChannel channel = input.getChannel();
+			ByteBuffer[] chunks = new ByteBuffer[getNumberOfChunks(numberOfPositions)];
+			for (int i = 0; i < chunks.length; i++) {
+				long offset = (long) i << CHUNK_BITS;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset,
+						Math.min(numberOfPositions - offset, CHUNK_MASK + 1));
+			}
+
+			return new EndgameTable(moverCount, otherCount, chunks);
+		} finally {
+			input.close();
+		}
+	}
+
+	public void write(File file) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+
+		try {
+			DataOutputStream header = new DataOutputStream(output);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(moverCount);
+			header.writeInt(otherCount);
+			header.writeLong(index.getNumberOfPositions());
+			header.flush();
+
+			FileChannel channel = output.getChannel();
+			for (ByteBuffer chunk : chunks) {
+				ByteBuffer values = chunk.duplicate();
+				values.clear();
+
+				while (values.hasRemaining()) {
+					channel.write(values);
+				}
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
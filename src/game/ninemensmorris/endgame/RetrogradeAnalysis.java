@@ -0,0 +1,348 @@
+package game.ninemensmorris.endgame;
+
+import game.ninemensmorris.model.BoardState;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Solves the subspaces of the moving phase by retrograde analysis.
+ * <p>
+ * A move without taking a piece leads from the subspace (m, o) to (o, m), so
+ * the two are solved together. A move taking a piece leaves them for a
+ * subspace with fewer pieces, which has to be solved first. Every position is
+ * first given the number of its moves inside the pair and the values of the
+ * moves leaving it. The positions are then resolved in order of their
+ * distance to the end of the game: a position lost in n plies makes all of
+ * its predecessors won in n + 1 and a position won in n plies takes one
+ * unresolved move from each of its predecessors, which are lost once they
+ * have none left. The positions that are never resolved are draws.
+ * <p>
+ * Symmetric positions share an index, so the moves of a position are counted
+ * by the distinct indices they lead to and the predecessors of a position are
+ * visited once per distinct index.
+ * <p>
+ * Usage: RetrogradeAnalysis directory maxPiecesOfPlayer
+ */
+public class RetrogradeAnalysis {
+	private static final int ALL_POSITIONS_MASK = (1 << BoardState.NUMBER_OF_POSITIONS) - 1;
+	private static final int MAX_DISTANCE = 254;
+	private static final int DRAW_EXIT = 0xFF;
+	private static final int[][] positionToMillsMask;
+
+	static {
+		positionToMillsMask = new int[BoardState.NUMBER_OF_POSITIONS][];
+
+		for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+			int numberOfMills = 0;
+			for (int i = 0; i < BoardState.getNumberOfPossibleMills(); i++) {
+				if ((BoardState.getMillMask(i) & (1 << position)) != 0) {
+					numberOfMills++;
+				}
+			}
+
+			positionToMillsMask[position] = new int[numberOfMills];
+			numberOfMills = 0;
+			for (int i = 0; i < BoardState.getNumberOfPossibleMills(); i++) {
+				if ((BoardState.getMillMask(i) & (1 << position)) != 0) {
+					positionToMillsMask[position][numberOfMills++] = BoardState.getMillMask(i);
+				}
+			}
+		}
+	}
+
+	private final EndgameDatabase database;
+	private int[] moverCounts;
+	private int[] otherCounts;
+	private EndgameIndex[] indices;
+	private final int[] adjacentIndices;
+	private byte[][] values;
+	private byte[][] numbersOfUnresolvedMoves;
+	private byte[][] maxExitDistances;
+	private int maxDistance;
+
+	/**
+	 * @param database receives the solved tables and has to contain the
+	 *        tables of the subspaces with fewer pieces
+	 */
+	public RetrogradeAnalysis(EndgameDatabase database) {
+		this.database = database;
+		this.adjacentIndices = new int[BoardState.MAX_NUMBER_OF_MOVES];
+	}
+
+	private static boolean completesMill(int pieces, int position) {
+		for (int millMask : positionToMillsMask[position]) {
+			if ((pieces & millMask) == millMask) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static int getPiecesThatCanBeTaken(int pieces) {
+		int piecesFromMill = 0;
+
+		for (int i = 0; i < BoardState.getNumberOfPossibleMills(); i++) {
+			int millMask = BoardState.getMillMask(i);
+			if ((pieces & millMask) == millMask) {
+				piecesFromMill |= millMask;
+			}
+		}
+
+		return (pieces & ~piecesFromMill) == 0 ? pieces : pieces & ~piecesFromMill;
+	}
+
+	private static int getToPositions(int position, int numberOfPieces, int emptyPositions) {
+		if (numberOfPieces <= 3 && BoardState.IS_FLYING_ALLOWED) {
+			return emptyPositions;
+		}
+
+		return BoardState.getNeighboursMask(position) & emptyPositions;
+	}
+
+	private int getPartner(int side) {
+		return values.length == 1 ? side : 1 - side;
+	}
+
+	private static int addDistinct(int[] buffer, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (buffer[i] == value) {
+				return size;
+			}
+		}
+
+		buffer[size] = value;
+		return size + 1;
+	}
+
+	private void setDistance(int side, int index, int distance) {
+		if (distance > MAX_DISTANCE) {
+			throw new IllegalStateException("Distance to the end of the game " + distance + " does not fit the table");
+		}
+
+		values[side][index] = (byte) EndgameDatabase.getValueOfDistance(distance);
+		maxDistance = Math.max(maxDistance, distance);
+	}
+
+	/**
+	 * Solves the subspace with the given number of pieces of the player on
+	 * move and of the other player together with its mirrored one and adds
+	 * both tables to the database.
+	 */
+	public void solve(int moverCount, int otherCount) {
+		if (!EndgameDatabase.isSubspaceValid(moverCount, otherCount)
+				|| EndgameIndex.getInstance(moverCount, otherCount).getNumberOfPositions() > Integer.MAX_VALUE
+				|| EndgameIndex.getInstance(otherCount, moverCount).getNumberOfPositions() > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException();
+		}
+
+		int numberOfSides = moverCount == otherCount ? 1 : 2;
+		moverCounts = new int[] {moverCount, otherCount};
+		otherCounts = new int[] {otherCount, moverCount};
+		indices = new EndgameIndex[] {EndgameIndex.getInstance(moverCount, otherCount), EndgameIndex.getInstance(otherCount, moverCount)};
+		values = new byte[numberOfSides][];
+		numbersOfUnresolvedMoves = new byte[numberOfSides][];
+		maxExitDistances = new byte[numberOfSides][];
+		maxDistance = 0;
+
+		for (int side = 0; side < numberOfSides; side++) {
+			int numberOfPositions = (int) indices[side].getNumberOfPositions();
+			values[side] = new byte[numberOfPositions];
+			numbersOfUnresolvedMoves[side] = new byte[numberOfPositions];
+			maxExitDistances[side] = new byte[numberOfPositions];
+
+			initialize(side);
+		}
+
+		for (int distance = 0; distance <= maxDistance; distance++) {
+			for (int side = 0; side < numberOfSides; side++) {
+				byte[] sideValues = values[side];
+				byte value = (byte) EndgameDatabase.getValueOfDistance(distance);
+
+				for (int index = 0; index < sideValues.length; index++) {
+					if (sideValues[index] == value) {
+						resolvePredecessors(side, index, distance);
+					}
+				}
+			}
+		}
+
+		for (int side = 0; side < numberOfSides; side++) {
+			database.addTable(new EndgameTable(moverCounts[side], otherCounts[side], values[side]));
+		}
+
+		values = null;
+		indices = null;
+		numbersOfUnresolvedMoves = null;
+		maxExitDistances = null;
+	}
+
+	/**
+	 * The indices that are not canonical stay draws and are never visited.
+	 */
+	private void initialize(int side) {
+		EndgameIndex sideIndex = indices[side];
+
+		for (int index = 0; index < values[side].length; index++) {
+			int moverPieces = sideIndex.getMoverPieces(index);
+			int otherPieces = sideIndex.getOtherPieces(index);
+
+			if (sideIndex.getIndex(moverPieces, otherPieces) == index) {
+				initialize(side, index, moverPieces, otherPieces);
+			}
+		}
+	}
+
+	private void initialize(int side, int index, int moverPieces, int otherPieces) {
+		int emptyPositions = ~(moverPieces | otherPieces) & ALL_POSITIONS_MASK;
+		int numberOfInnerMoves = 0;
+		boolean hasExit = false;
+		boolean hasDrawExit = false;
+		int minWinDistance = Integer.MAX_VALUE;
+		int maxExitDistance = 0;
+		int piecesThatCanBeTaken = -1;
+
+		for (int pieces = moverPieces; pieces != 0; pieces &= pieces - 1) {
+			int fromPosition = Integer.numberOfTrailingZeros(pieces);
+
+			for (int toPositions = getToPositions(fromPosition, moverCounts[side], emptyPositions); toPositions != 0;
+					toPositions &= toPositions - 1) {
+				int toPosition = Integer.numberOfTrailingZeros(toPositions);
+				int newMoverPieces = (moverPieces & ~(1 << fromPosition)) | (1 << toPosition);
+
+				if (!completesMill(newMoverPieces, toPosition)) {
+					numberOfInnerMoves = addDistinct(adjacentIndices, numberOfInnerMoves,
+							(int) indices[getPartner(side)].getIndex(otherPieces, newMoverPieces));
+					continue;
+				}
+
+				if (piecesThatCanBeTaken == -1) {
+					piecesThatCanBeTaken = getPiecesThatCanBeTaken(otherPieces);
+				}
+
+				for (int taken = piecesThatCanBeTaken; taken != 0; taken &= taken - 1) {
+					int value = getExitValue(otherPieces & ~(taken & -taken), newMoverPieces);
+					hasExit = true;
+
+					if (value == EndgameDatabase.DRAW) {
+						hasDrawExit = true;
+					} else if (EndgameDatabase.isLoss(value)) {
+						minWinDistance = Math.min(minWinDistance, EndgameDatabase.getDistance(value) + 1);
+					} else {
+						maxExitDistance = Math.max(maxExitDistance, EndgameDatabase.getDistance(value));
+					}
+				}
+			}
+		}
+
+		numbersOfUnresolvedMoves[side][index] = (byte) numberOfInnerMoves;
+		maxExitDistances[side][index] = (byte) (hasDrawExit ? DRAW_EXIT : maxExitDistance);
+
+		if (minWinDistance != Integer.MAX_VALUE) {
+			setDistance(side, index, minWinDistance);
+		} else if (numberOfInnerMoves == 0 && !hasDrawExit) {
+			setDistance(side, index, hasExit ? maxExitDistance + 1 : 0);
+		}
+	}
+
+	private int getExitValue(int moverPieces, int otherPieces) {
+		int moverCount = Integer.bitCount(moverPieces);
+		if (moverCount < EndgameDatabase.MIN_PIECES) {
+			return EndgameDatabase.getValueOfDistance(0);
+		}
+
+		EndgameTable table = database.getTable(moverCount, Integer.bitCount(otherPieces));
+		if (table == null) {
+			throw new IllegalStateException("The subspace " + moverCount + "-" + Integer.bitCount(otherPieces)
+					+ " has to be solved first");
+		}
+
+		return table.getValue(moverPieces, otherPieces);
+	}
+
+	/**
+	 * The predecessors of a position are reached by moving back a piece of the
+	 * player who made the last move, which must not have completed a mill.
+	 */
+	private void resolvePredecessors(int side, int index, int distance) {
+		int moverPieces = indices[side].getMoverPieces(index);
+		int otherPieces = indices[side].getOtherPieces(index);
+		int emptyPositions = ~(moverPieces | otherPieces) & ALL_POSITIONS_MASK;
+		int partner = getPartner(side);
+		int numberOfPredecessors = 0;
+
+		for (int pieces = otherPieces; pieces != 0; pieces &= pieces - 1) {
+			int toPosition = Integer.numberOfTrailingZeros(pieces);
+			if (completesMill(otherPieces, toPosition)) {
+				continue;
+			}
+
+			for (int fromPositions = getToPositions(toPosition, otherCounts[side], emptyPositions); fromPositions != 0;
+					fromPositions &= fromPositions - 1) {
+				int fromPosition = Integer.numberOfTrailingZeros(fromPositions);
+				numberOfPredecessors = addDistinct(adjacentIndices, numberOfPredecessors,
+						(int) indices[partner].getIndex((otherPieces & ~(1 << toPosition)) | (1 << fromPosition), moverPieces));
+			}
+		}
+
+		for (int i = 0; i < numberOfPredecessors; i++) {
+			int predecessorIndex = adjacentIndices[i];
+			int value = values[partner][predecessorIndex] & 0xFF;
+
+			if (distance % 2 == 0) {
+				if (value == EndgameDatabase.DRAW
+						|| (EndgameDatabase.isWin(value) && EndgameDatabase.getDistance(value) > distance + 1)) {
+					setDistance(partner, predecessorIndex, distance + 1);
+				}
+			} else if (value == EndgameDatabase.DRAW) {
+				int numberOfUnresolvedMoves = --numbersOfUnresolvedMoves[partner][predecessorIndex];
+				int maxExitDistance = maxExitDistances[partner][predecessorIndex] & 0xFF;
+
+				if (numberOfUnresolvedMoves == 0 && maxExitDistance != DRAW_EXIT) {
+					setDistance(partner, predecessorIndex, Math.max(distance, maxExitDistance) + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves every subspace in which no player has more than the given number
+	 * of pieces, from the fewest pieces up, and writes the tables to the
+	 * directory. Tables already in the directory are loaded instead.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: RetrogradeAnalysis directory maxPiecesOfPlayer");
+			System.exit(2);
+		}
+
+		File directory = new File(args[0]);
+		int maxPieces = Integer.parseInt(args[1]);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+
+		EndgameDatabase database = EndgameDatabase.load(directory);
+		RetrogradeAnalysis analysis = new RetrogradeAnalysis(database);
+
+		for (int totalPieces = 2 * EndgameDatabase.MIN_PIECES; totalPieces <= 2 * maxPieces; totalPieces++) {
+			for (int moverCount = EndgameDatabase.MIN_PIECES; moverCount <= totalPieces / 2; moverCount++) {
+				int otherCount = totalPieces - moverCount;
+				if (otherCount > maxPieces || database.getTable(moverCount, otherCount) != null) {
+					continue;
+				}
+
+				long startTime = System.currentTimeMillis();
+				analysis.solve(moverCount, otherCount);
+
+				database.getTable(moverCount, otherCount).write(new File(directory, EndgameTable.getFileName(moverCount, otherCount)));
+				if (moverCount != otherCount) {
+					database.getTable(otherCount, moverCount).write(new File(directory, EndgameTable.getFileName(otherCount, moverCount)));
+				}
+				System.out.println("Solved " + moverCount + "-" + otherCount + " in " + (System.currentTimeMillis() - startTime)
+						+ " ms, longest game " + analysis.maxDistance + " plies");
+			}
+		}
+	}
+}
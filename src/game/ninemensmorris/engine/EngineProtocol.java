@@ -0,0 +1,268 @@
+package game.ninemensmorris.engine;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.SearchInfo;
+import game.ninemensmorris.algorithms.SearchListener;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveList;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * One session of the line based engine protocol, modelled on UCI. The
+ * commands are:
+ * <ul>
+ * <li>nmm: answered by the engine name and nmmok</li>
+ * <li>isready: answered by readyok</li>
+ * <li>newgame: clears the board</li>
+ * <li>position startpos|board &lt;notation&gt; [moves &lt;move&gt;...]: sets the
+ * board, given by its {@link BoardState#toNotation() notation}, and plays the
+ * moves, given by their {@link Move#toNotation() notation}, on it</li>
+ * <li>go [depth &lt;plies&gt;] [movetime &lt;ms&gt;] [infinite]: searches the
+ * board, printing an info line after every iteration and a bestmove line,
+ * with the move or none, at the end</li>
+ * <li>stop: ends the search with the best move found so far</li>
+ * <li>quit: ends the session</li>
+ * </ul>
+ * Errors are reported by info string lines. The output may be written from
+ * the searching threads.
+ * <p>
+ * A session may have a time budget for the searches of a game, restored by
+ * newgame. Every search is limited to the remaining budget, so once it is
+ * spent the searches end after their first iteration.
+ */
+public class EngineProtocol {
+	public static final String ENGINE_NAME = "NineMensMorris";
+	public static final int DEFAULT_MAX_DEPTH = 15;
+	public static final int DEFAULT_MAX_TIME = 5000;
+
+	private final SearchEngine searchEngine;
+	private final Consumer<String> output;
+	private BoardState board;
+	private CompletableFuture<SearchResult> search;
+	private CompletableFuture<SearchResult> searchOutput;
+	private long timeBudget;
+	private volatile long remainingTime;
+
+	public EngineProtocol(AlphaBetaPruning solver, Executor executor, Consumer<String> output) {
+		this.searchEngine = new SearchEngine(solver, executor);
+		this.output = output;
+		this.board = new BoardState();
+		this.search = null;
+		this.searchOutput = null;
+		this.timeBudget = Long.MAX_VALUE;
+		this.remainingTime = Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param timeBudget the search time of a game in milliseconds
+	 */
+	public void setTimeBudget(long timeBudget) {
+		if (timeBudget < 0) {
+			throw new IllegalArgumentException();
+		}
+
+		this.timeBudget = timeBudget;
+		this.remainingTime = timeBudget;
+	}
+
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	public long getRemainingTime() {
+		return remainingTime;
+	}
+
+	/**
+	 * @return false if the command ends the session
+	 */
+	public boolean execute(String line) {
+		String[] words = line.trim().split("\\s+");
+
+		try {
+			if (words[0].isEmpty()) {
+				return true;
+			} else if (words[0].equals("nmm")) {
+				output.accept("id name " + ENGINE_NAME);
+				output.accept("nmmok");
+			} else if (words[0].equals("isready")) {
+				output.accept("readyok");
+			} else if (words[0].equals("newgame")) {
+				checkNotSearching();
+				board = new BoardState();
+				remainingTime = timeBudget;
+			} else if (words[0].equals("position")) {
+				checkNotSearching();
+				board = parsePosition(words);
+			} else if (words[0].equals("go")) {
+				checkNotSearching();
+				go(parseLimits(words));
+			} else if (words[0].equals("stop")) {
+				searchEngine.stop();
+			} else if (words[0].equals("quit")) {
+				close();
+				return false;
+			} else {
+				output.accept("info string Unknown command: " + words[0]);
+			}
+		} catch (IllegalArgumentException e) {
+			output.accept("info string " + e.getMessage());
+		} catch (IllegalStateException e) {
+			output.accept("info string " + e.getMessage());
+		}
+
+		return true;
+	}
+
+	/**
+	 * Cancels the running search without printing its result.
+	 */
+	public void close() {
+		if (search != null) {
+			search.cancel(false);
+		}
+	}
+
+	/**
+	 * @return a future completed when the last search, even a cancelled one,
+	 *         has stopped using the solver and its transposition table
+	 */
+	public CompletableFuture<Void> getSearchEnd() {
+		return searchEngine.getSearchEnd();
+	}
+
+	/**
+	 * Waits until the running search, if any, has printed its result.
+	 */
+	public void waitForSearch() {
+		if (search == null) {
+			return;
+		}
+
+		try {
+			searchOutput.join();
+		} catch (CancellationException e) {
+			// A cancelled search prints nothing.
+		} catch (CompletionException e) {
+			// The failure has been printed.
+		}
+	}
+
+	private void checkNotSearching() {
+		if (search != null && !search.isDone()) {
+			throw new IllegalStateException("Searching, send stop first");
+		}
+	}
+
+	private static BoardState parsePosition(String[] words) {
+		BoardState result;
+		int i;
+
+		if (words.length >= 2 && words[1].equals("startpos")) {
+			result = new BoardState();
+			i = 2;
+		} else if (words.length >= 6 && words[1].equals("board")) {
+			result = new BoardState(words[2] + " " + words[3] + " " + words[4] + " " + words[5]);
+			i = 6;
+		} else {
+			throw new IllegalArgumentException("Usage: position startpos|board <notation> [moves <move>...]");
+		}
+
+		if (i < words.length) {
+			if (!words[i].equals("moves")) {
+				throw new IllegalArgumentException("Expected moves instead of " + words[i]);
+			}
+
+			MoveList moveList = new MoveList();
+			for (i++; i < words.length; i++) {
+				int move = new Move(words[i]).encode();
+				result.generateValidMoves(moveList);
+				if (!contains(moveList, move)) {
+					throw new IllegalArgumentException("Invalid move " + words[i] + " on " + result.toNotation());
+				}
+
+				result.makeMove(move);
+			}
+		}
+
+		return result;
+	}
+
+	private static boolean contains(MoveList moveList, int move) {
+		for (int i = 0; i < moveList.size(); i++) {
+			if (moveList.getMove(i) == move) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static SearchLimits parseLimits(String[] words) {
+		int maxDepth = -1;
+		int maxTime = -1;
+
+		try {
+			for (int i = 1; i < words.length; i++) {
+				if (words[i].equals("depth") && i + 1 < words.length) {
+					maxDepth = Integer.parseInt(words[++i]);
+				} else if (words[i].equals("movetime") && i + 1 < words.length) {
+					maxTime = Integer.parseInt(words[++i]);
+				} else if (words[i].equals("infinite")) {
+					maxDepth = SearchLimits.MAX_DEPTH;
+					maxTime = Integer.MAX_VALUE;
+				} else {
+					throw new IllegalArgumentException("Usage: go [depth <plies>] [movetime <ms>] [infinite]");
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid number: " + e.getMessage(), e);
+		}
+
+		if (maxDepth == -1 && maxTime == -1) {
+			return new SearchLimits(DEFAULT_MAX_DEPTH, DEFAULT_MAX_TIME);
+		}
+
+		return new SearchLimits(maxDepth == -1 ? SearchLimits.MAX_DEPTH : maxDepth, maxTime == -1 ? Integer.MAX_VALUE : maxTime);
+	}
+
+	private void go(SearchLimits limits) {
+		if (remainingTime < limits.getMaxTime()) {
+			limits = new SearchLimits(limits.getMaxDepth(), (int) Math.max(remainingTime, 0));
+		}
+
+		final CompletableFuture<SearchResult> future = searchEngine.search(board, limits, new SearchListener() {
+			@Override
+			public void iterationFinished(SearchInfo info) {
+				output.accept("info " + info);
+			}
+		});
+		search = future;
+
+		searchOutput = future.whenComplete(new BiConsumer<SearchResult, Throwable>() {
+			@Override
+			public void accept(SearchResult result, Throwable exception) {
+				if (result != null) {
+					if (remainingTime != Long.MAX_VALUE) {
+						remainingTime -= result.getElapsedTime();
+					}
+					output.accept("bestmove " + (result.getBestMove() == null ? "none" : result.getBestMove().toNotation()));
+				} else if (exception instanceof RejectedExecutionException) {
+					output.accept("info string Busy, the search was rejected");
+					output.accept("bestmove none");
+				} else if (!future.isCancelled()) {
+					output.accept("info string Search failed: " + exception);
+					output.accept("bestmove none");
+				}
+			}
+		});
+	}
+}
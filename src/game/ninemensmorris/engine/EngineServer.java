@@ -0,0 +1,323 @@
+package game.ninemensmorris.engine;
+
+import game.ninemensmorris.algorithms.TranspositionTable;
+import game.ninemensmorris.book.OpeningBook;
+import game.ninemensmorris.endgame.EndgameDatabase;
+import game.ninemensmorris.engine.SessionManager.Session;
+import game.ninemensmorris.model.EvaluationWeights;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Headless engine speaking the {@link EngineProtocol} over standard input and
+ * output or over TCP connections to the loopback address. All connections are
+ * served by one selector thread and every one of them is a session of the
+ * {@link SessionManager}. Connections beyond its maximal number of sessions
+ * are told so and closed.
+ * <p>
+ * Usage: EngineServer [-port n] [-threads n] [-hash mb] [-hashmode
+ * shared|partitioned] [-sessions n] [-queue n] [-budget ms] [-endgame dir]
+ * [-book file] [-weights w,w,w,w]
+ */
+public class EngineServer {
+	private static final Charset CHARSET = Charset.forName("US-ASCII");
+	private static final int BUFFER_SIZE = 4096;
+	private static final int MAX_LINE_LENGTH = 65536;
+
+	private final SessionManager sessionManager;
+
+	public EngineServer(SessionManager sessionManager) {
+		this.sessionManager = sessionManager;
+	}
+
+	/**
+	 * Serves one session until quit or the end of the input, waiting for the
+	 * last search in the latter case.
+	 */
+	public void serve(InputStream input, final PrintStream output) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input, CHARSET));
+		Session session = sessionManager.openSession(new Consumer<String>() {
+			@Override
+			public void accept(String line) {
+				synchronized (output) {
+					output.println(line);
+					output.flush();
+				}
+			}
+		});
+		if (session == null) {
+			output.println("info string Too many sessions");
+			return;
+		}
+
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!session.execute(line)) {
+				return;
+			}
+		}
+
+		session.getProtocol().waitForSearch();
+		session.close();
+	}
+
+	/**
+	 * Serves the connections to the port of the loopback address forever.
+	 */
+	public void serve(int port) throws IOException {
+		Selector selector = Selector.open();
+		ServerSocketChannel serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		Queue<Connection> connectionsWithOutput = new ConcurrentLinkedQueue<Connection>();
+
+		while (true) {
+			selector.select();
+
+			Connection connection;
+			while ((connection = connectionsWithOutput.poll()) != null) {
+				connection.updateInterest();
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+
+				if (key.isAcceptable()) {
+					SocketChannel channel = serverChannel.accept();
+					if (channel != null) {
+						channel.configureBlocking(false);
+						new Connection(channel, selector, connectionsWithOutput);
+					}
+					continue;
+				}
+
+				connection = (Connection) key.attachment();
+				try {
+					if (key.isReadable()) {
+						connection.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						connection.write();
+					}
+				} catch (IOException e) {
+					connection.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A session over a non-blocking socket. Lines are read and executed on
+	 * the selector thread, while output may be queued by any thread.
+	 */
+	private class Connection {
+		private final SocketChannel channel;
+		private final Selector selector;
+		private final SelectionKey key;
+		private final Queue<Connection> connectionsWithOutput;
+		private final ByteBuffer input;
+		private final StringBuilder line;
+		private final Queue<ByteBuffer> output;
+		private final Session session;
+		private volatile boolean isClosing;
+
+		Connection(SocketChannel channel, Selector selector, Queue<Connection> connectionsWithOutput) throws IOException {
+			this.channel = channel;
+			this.selector = selector;
+			this.connectionsWithOutput = connectionsWithOutput;
+			this.input = ByteBuffer.allocate(BUFFER_SIZE);
+			this.line = new StringBuilder();
+			this.output = new ConcurrentLinkedQueue<ByteBuffer>();
+			this.isClosing = false;
+			this.session = sessionManager.openSession(new Consumer<String>() {
+				@Override
+				public void accept(String line) {
+					send(line);
+				}
+			});
+			this.key = channel.register(selector, SelectionKey.OP_READ, this);
+
+			if (session == null) {
+				isClosing = true;
+				send("info string Too many sessions");
+			}
+		}
+
+		void send(String text) {
+			output.add(ByteBuffer.wrap((text + "\n").getBytes(CHARSET)));
+			connectionsWithOutput.add(this);
+			selector.wakeup();
+		}
+
+		void read() throws IOException {
+			if (channel.read(input) == -1) {
+				close();
+				return;
+			}
+
+			input.flip();
+			while (input.hasRemaining() && !isClosing) {
+				char c = (char) (input.get() & 0xFF);
+
+				if (c == '\n') {
+					String command = line.toString();
+					line.setLength(0);
+
+					if (!session.execute(command)) {
+						isClosing = true;
+						updateInterest();
+					}
+				} else if (c != '\r') {
+					if (line.length() == MAX_LINE_LENGTH) {
+						line.setLength(0);
+						send("info string Line too long");
+					}
+					line.append(c);
+				}
+			}
+			input.clear();
+		}
+
+		void write() throws IOException {
+			ByteBuffer buffer;
+			while ((buffer = output.peek()) != null) {
+				channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					return;
+				}
+
+				output.poll();
+			}
+
+			updateInterest();
+		}
+
+		void updateInterest() {
+			if (!key.isValid()) {
+				return;
+			}
+
+			if (output.isEmpty()) {
+				if (isClosing) {
+					close();
+				} else {
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			} else {
+				key.interestOps(isClosing ? SelectionKey.OP_WRITE : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+
+		void close() {
+			isClosing = true;
+			if (session != null) {
+				session.close();
+			}
+			key.cancel();
+
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// The connection is dropped anyway.
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = -1;
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		int transpositionTableSizeInMB = TranspositionTable.DEFAULT_SIZE_IN_MB;
+		boolean isTranspositionTablePartitioned = false;
+		int maxSessions = 256;
+		int maxWaitingSearches = 1024;
+		long timeBudget = -1;
+		String endgameDirectory = null;
+		String openingBookFile = null;
+		EvaluationWeights evaluationWeights = EvaluationWeights.DEFAULT;
+		SessionManager sessionManager = null;
+
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException();
+				} else if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-threads")) {
+					numberOfThreads = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-hash")) {
+					transpositionTableSizeInMB = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-hashmode")) {
+					if (!args[i + 1].equals("shared") && !args[i + 1].equals("partitioned")) {
+						throw new IllegalArgumentException();
+					}
+					isTranspositionTablePartitioned = args[i + 1].equals("partitioned");
+				} else if (args[i].equals("-sessions")) {
+					maxSessions = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-queue")) {
+					maxWaitingSearches = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-budget")) {
+					timeBudget = Long.parseLong(args[i + 1]);
+				} else if (args[i].equals("-endgame")) {
+					endgameDirectory = args[i + 1];
+				} else if (args[i].equals("-book")) {
+					openingBookFile = args[i + 1];
+				} else if (args[i].equals("-weights")) {
+					evaluationWeights = EvaluationWeights.parse(args[i + 1]);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+
+			sessionManager = new SessionManager(numberOfThreads, maxWaitingSearches, maxSessions,
+					transpositionTableSizeInMB, isTranspositionTablePartitioned);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Usage: EngineServer [-port n] [-threads n] [-hash mb] [-hashmode shared|partitioned]"
+					+ " [-sessions n] [-queue n] [-budget ms] [-endgame dir] [-book file] [-weights w,w,w,w]");
+			System.exit(2);
+		}
+
+		sessionManager.setBoardEvaluationFunction(evaluationWeights);
+		if (timeBudget >= 0) {
+			sessionManager.setTimeBudget(timeBudget);
+		}
+		if (endgameDirectory != null) {
+			sessionManager.setEndgameDatabase(EndgameDatabase.load(new File(endgameDirectory)));
+		}
+		if (openingBookFile != null) {
+			sessionManager.setOpeningBook(OpeningBook.read(new File(openingBookFile)));
+		}
+
+		EngineServer server = new EngineServer(sessionManager);
+
+		if (port == -1) {
+			server.serve(System.in, System.out);
+		} else {
+			System.err.println("Listening on port " + port);
+			server.serve(port);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package game.ninemensmorris.engine;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.SearchListener;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.Move;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs the searches of one {@link AlphaBetaPruning} on an executor, which may
+ * be shared by many engines. Cancelling the returned future terminates the
+ * search, while {@link #stop()} ends it with the best move found so far.
+ * Either way the search ends once it has a move to play, which takes a few
+ * nodes at most.
+ */
+public class SearchEngine {
+	private final AlphaBetaPruning solver;
+	private final Executor executor;
+	private CompletableFuture<SearchResult> currentSearch;
+	private CompletableFuture<Void> currentSearchEnd;
+	private boolean isSearching;
+	private boolean isStopRequested;
+
+	public SearchEngine(AlphaBetaPruning solver, Executor executor) {
+		if (solver == null || executor == null) {
+			throw new IllegalArgumentException();
+		}
+
+		this.solver = solver;
+		this.executor = executor;
+		this.currentSearch = null;
+		this.currentSearchEnd = CompletableFuture.completedFuture(null);
+		this.isSearching = false;
+		this.isStopRequested = false;
+	}
+
+	/**
+	 * @return a fixed pool of daemon threads for running searches
+	 */
+	public static ExecutorService newExecutor(int numberOfThreads) {
+		return Executors.newFixedThreadPool(numberOfThreads, newThreadFactory());
+	}
+
+	/**
+	 * @return a fixed pool of daemon threads for running searches which
+	 *         rejects searches while the given number of them are waiting
+	 */
+	public static ExecutorService newExecutor(int numberOfThreads, int maxWaitingSearches) {
+		return new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(maxWaitingSearches), newThreadFactory());
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "SearchEngine " + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		};
+	}
+
+	public AlphaBetaPruning getSolver() {
+		return solver;
+	}
+
+	/**
+	 * Searches the board, which must not be changed until the search is
+	 * done, within the given limits.
+	 * 
+	 * @param listener notified after every iteration on the searching thread
+	 *        or null
+	 * @return the future of the result, completed exceptionally with a
+	 *         {@link RejectedExecutionException} if the executor rejects the
+	 *         search
+	 * @throws IllegalStateException if the previous search is not done
+	 */
+	public synchronized CompletableFuture<SearchResult> search(final BoardState board, final SearchLimits limits,
+			final SearchListener listener) {
+		if (currentSearch != null && !currentSearch.isDone()) {
+			throw new IllegalStateException("The previous search is not done");
+		}
+
+		final CompletableFuture<SearchResult> future = new CompletableFuture<SearchResult>();
+		final CompletableFuture<Void> searchEnd = new CompletableFuture<Void>();
+		future.whenComplete(new BiConsumer<SearchResult, Throwable>() {
+			@Override
+			public void accept(SearchResult result, Throwable exception) {
+				if (future.isCancelled()) {
+					cancel(searchEnd);
+				}
+			}
+		});
+
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				if (!start(future)) {
+					searchEnd.complete(null);
+					return;
+				}
+
+				long startTime = System.currentTimeMillis();
+				try {
+					solver.setBoardState(board);
+					solver.setMaxDepth(limits.getMaxDepth());
+					solver.setMaxTime(limits.getMaxTime());
+					solver.setSearchListener(listener);
+
+					Move move = solver.searchForBestMove();
+					future.complete(new SearchResult(move, solver.getLastSearchInfo(), solver.getNumberOfSearchedNodes(),
+							System.currentTimeMillis() - startTime));
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					solver.setSearchListener(null);
+					finish();
+					searchEnd.complete(null);
+				}
+			}
+		};
+
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+			searchEnd.complete(null);
+		}
+
+		currentSearch = future;
+		currentSearchEnd = searchEnd;
+		isStopRequested = false;
+		return future;
+	}
+
+	/**
+	 * @return a future completed when the last search has stopped using the
+	 *         solver, which for a cancelled search may be well after its own
+	 *         future
+	 */
+	public synchronized CompletableFuture<Void> getSearchEnd() {
+		return currentSearchEnd;
+	}
+
+	private synchronized boolean start(CompletableFuture<SearchResult> future) {
+		if (future.isDone()) {
+			return false;
+		}
+
+		// The termination of the solver is reset here, under the same lock as
+		// stop(), so that a stop of this search is never lost.
+		isSearching = true;
+		if (isStopRequested) {
+			solver.terminateSearch();
+		} else {
+			solver.clearTermination();
+		}
+		return true;
+	}
+
+	private synchronized void finish() {
+		isSearching = false;
+	}
+
+	private synchronized void cancel(CompletableFuture<Void> searchEnd) {
+		if (isSearching) {
+			solver.terminateSearch();
+		} else {
+			// The search has ended or will not start, as its future is done.
+			searchEnd.complete(null);
+		}
+	}
+
+	/**
+	 * Terminates the running search, if any, which then completes with the
+	 * best move of its finished iterations. A search that has not started
+	 * yet ends as soon as it starts.
+	 */
+	public synchronized void stop() {
+		if (isSearching) {
+			solver.terminateSearch();
+		} else if (currentSearch != null && !currentSearch.isDone()) {
+			isStopRequested = true;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package game.ninemensmorris.engine;
+
+/**
+ * How long a search may take: the maximal depth in plies and the maximal
+ * time in milliseconds.
+ */
+public class SearchLimits {
+	public static final int MAX_DEPTH = 100;
+
+	private final int maxDepth;
+	private final int maxTime;
+
+	public SearchLimits(int maxDepth, int maxTime) {
+		if (maxDepth < 1 || maxDepth > MAX_DEPTH || maxTime < 0) {
+			throw new IllegalArgumentException("Invalid search limits: depth " + maxDepth + ", time " + maxTime);
+		}
+
+		this.maxDepth = maxDepth;
+		this.maxTime = maxTime;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public int getMaxTime() {
+		return maxTime;
+	}
+}
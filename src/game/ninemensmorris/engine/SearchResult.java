@@ -0,0 +1,51 @@
+package game.ninemensmorris.engine;
+
+import game.ninemensmorris.algorithms.SearchInfo;
+import game.ninemensmorris.model.Move;
+
+/**
+ * The outcome of a search of a {@link SearchEngine}.
+ */
+public class SearchResult {
+	private final Move bestMove;
+	private final SearchInfo lastIteration;
+	private final long numberOfNodes;
+	private final long elapsedTime;
+
+	public SearchResult(Move bestMove, SearchInfo lastIteration, long numberOfNodes, long elapsedTime) {
+		this.bestMove = bestMove;
+		this.lastIteration = lastIteration;
+		this.numberOfNodes = numberOfNodes;
+		this.elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * @return the best move or null if there was no move to search
+	 */
+	public Move getBestMove() {
+		return bestMove;
+	}
+
+	/**
+	 * @return the last finished iteration or null if the move was taken from
+	 *         the opening book or the endgame database
+	 */
+	public SearchInfo getLastIteration() {
+		return lastIteration;
+	}
+
+	/**
+	 * @return the number of nodes visited by all threads
+	 */
+	public long getNumberOfNodes() {
+		return numberOfNodes;
+	}
+
+	/**
+	 * @return the time the search ran in milliseconds, not counting the time
+	 *         it waited for the executor
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+}
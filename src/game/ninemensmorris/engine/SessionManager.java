@@ -0,0 +1,197 @@
+package game.ninemensmorris.engine;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.TranspositionTable;
+import game.ninemensmorris.book.OpeningBook;
+import game.ninemensmorris.endgame.EndgameDatabase;
+import game.ninemensmorris.model.BoardEvaluationFunction;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.EvaluationWeights;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Runs the games of many {@link EngineProtocol} sessions on shared, bounded
+ * resources:
+ * <ul>
+ * <li>All searches run on a fixed number of threads. A session has at most
+ * one search waiting or running and they are served in order of arrival, so
+ * the threads go round the sessions. Searches beyond the given number of
+ * waiting ones are rejected.</li>
+ * <li>Every session gets the same time budget per game.</li>
+ * <li>The transposition tables of all sessions stay within a memory budget.
+ * Either all sessions share one table of that size, or every session gets
+ * its own partition of the budget divided by the maximal number of
+ * sessions. Partitions are reused by later sessions once the last search
+ * of their session has ended.</li>
+ * <li>No more than the given number of sessions can be open.</li>
+ * </ul>
+ */
+public class SessionManager {
+	private final int maxSessions;
+	private final ExecutorService executor;
+	private final TranspositionTable sharedTranspositionTable;
+	private final int partitionSizeInKB;
+	private final Deque<TranspositionTable> freePartitions;
+	private int numberOfSessions;
+	private long timeBudget;
+	private EndgameDatabase endgameDatabase;
+	private OpeningBook openingBook;
+	private BoardEvaluationFunction boardEvaluationFunction;
+
+	/**
+	 * @param transpositionTableBudgetInMB the memory of all transposition
+	 *        tables
+	 * @param isTranspositionTablePartitioned whether every session gets its
+	 *        own part of the memory instead of sharing one table
+	 */
+	public SessionManager(int numberOfThreads, int maxWaitingSearches, int maxSessions, int transpositionTableBudgetInMB,
+			boolean isTranspositionTablePartitioned) {
+		if (numberOfThreads < 1 || maxWaitingSearches < 1 || maxSessions < 1) {
+			throw new IllegalArgumentException();
+		}
+
+		this.maxSessions = maxSessions;
+		this.executor = SearchEngine.newExecutor(numberOfThreads, maxWaitingSearches);
+		this.freePartitions = new ArrayDeque<TranspositionTable>();
+		this.numberOfSessions = 0;
+		this.timeBudget = Long.MAX_VALUE;
+		this.boardEvaluationFunction = EvaluationWeights.DEFAULT;
+
+		if (isTranspositionTablePartitioned) {
+			this.sharedTranspositionTable = null;
+			this.partitionSizeInKB = (int) ((long) transpositionTableBudgetInMB * 1024 / maxSessions);
+			if (partitionSizeInKB < 1) {
+				throw new IllegalArgumentException("The transposition table budget gives less than 1 KB per session");
+			}
+		} else {
+			this.sharedTranspositionTable = new TranspositionTable(transpositionTableBudgetInMB);
+			this.partitionSizeInKB = 0;
+		}
+	}
+
+	public void setEndgameDatabase(EndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+
+	public void setBoardEvaluationFunction(BoardEvaluationFunction boardEvaluationFunction) {
+		this.boardEvaluationFunction = boardEvaluationFunction;
+	}
+
+	/**
+	 * @param timeBudget the search time of a game of a session opened from
+	 *        now on in milliseconds
+	 */
+	public synchronized void setTimeBudget(long timeBudget) {
+		if (timeBudget < 0) {
+			throw new IllegalArgumentException();
+		}
+
+		this.timeBudget = timeBudget;
+	}
+
+	public synchronized int getNumberOfSessions() {
+		return numberOfSessions;
+	}
+
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	/**
+	 * @return the new session or null if the maximal number of sessions are
+	 *         open
+	 */
+	public synchronized Session openSession(Consumer<String> output) {
+		if (numberOfSessions == maxSessions) {
+			return null;
+		}
+
+		TranspositionTable transpositionTable = sharedTranspositionTable;
+		if (transpositionTable == null) {
+			transpositionTable = freePartitions.isEmpty() ? TranspositionTable.newTableOfSizeInKB(partitionSizeInKB) : freePartitions.pop();
+		}
+
+		AlphaBetaPruning solver = new AlphaBetaPruning(new BoardState(), EngineProtocol.DEFAULT_MAX_DEPTH,
+				EngineProtocol.DEFAULT_MAX_TIME, transpositionTable);
+		solver.setEndgameDatabase(endgameDatabase);
+		solver.setOpeningBook(openingBook);
+		solver.setBoardEvaluationFunction(boardEvaluationFunction);
+
+		EngineProtocol protocol = new EngineProtocol(solver, executor, output);
+		if (timeBudget != Long.MAX_VALUE) {
+			protocol.setTimeBudget(timeBudget);
+		}
+
+		numberOfSessions++;
+		return new Session(protocol, transpositionTable);
+	}
+
+	private synchronized void release(TranspositionTable transpositionTable) {
+		numberOfSessions--;
+
+		if (transpositionTable != sharedTranspositionTable) {
+			transpositionTable.clear();
+			freePartitions.push(transpositionTable);
+		}
+	}
+
+	/**
+	 * An open session, which must be closed to give its resources back.
+	 */
+	public class Session {
+		private final EngineProtocol protocol;
+		private final TranspositionTable transpositionTable;
+		private boolean isClosed;
+
+		private Session(EngineProtocol protocol, TranspositionTable transpositionTable) {
+			this.protocol = protocol;
+			this.transpositionTable = transpositionTable;
+			this.isClosed = false;
+		}
+
+		public EngineProtocol getProtocol() {
+			return protocol;
+		}
+
+		/**
+		 * @return false if the command ended the session, which is then
+		 *         closed
+		 * @see EngineProtocol#execute(String)
+		 */
+		public boolean execute(String line) {
+			if (!protocol.execute(line)) {
+				close();
+				return false;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Cancels the search of the session and gives its resources back
+		 * once that search has stopped using them.
+		 */
+		public synchronized void close() {
+			if (isClosed) {
+				return;
+			}
+
+			isClosed = true;
+			protocol.close();
+			protocol.getSearchEnd().thenRun(new Runnable() {
+				@Override
+				public void run() {
+					release(transpositionTable);
+				}
+			});
+		}
+	}
+}
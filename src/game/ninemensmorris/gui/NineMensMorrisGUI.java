@@ -4,16 +4,32 @@ import java.awt.BorderLayout;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.algorithms.SearchInfo;
+import game.ninemensmorris.algorithms.SearchListener;
+import game.ninemensmorris.algorithms.TranspositionTable;
+import game.ninemensmorris.book.OpeningBook;
+import game.ninemensmorris.endgame.EndgameDatabase;
+import game.ninemensmorris.engine.SearchEngine;
+import game.ninemensmorris.engine.SearchLimits;
+import game.ninemensmorris.engine.SearchResult;
 import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.EvaluationWeights;
 import game.ninemensmorris.model.Move;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 public class NineMensMorrisGUI extends JFrame {
 	private static final long serialVersionUID = -514606427157467570L;
@@ -23,16 +39,27 @@ public class NineMensMorrisGUI extends JFrame {
 	private JButton newGameButton;
 	private JTextField maxTimeTextField;
 	private JTextField maxDepthTextField;
+	private JCheckBox ponderCheckBox;
 	private JLabel statusLabel;
 	private AlphaBetaPruning solver;
+	private SearchEngine searchEngine;
+	private ExecutorService searchExecutor;
+	private TranspositionTable transpositionTable;
+	private EndgameDatabase endgameDatabase;
+	private OpeningBook openingBook;
+	private EvaluationWeights evaluationWeights;
 	private volatile MoveExecutorCallback moveExecutor;
 
 	private class MoveExecutor implements MoveExecutorCallback {
 		private boolean terminate = false;
+		private CompletableFuture<SearchResult> search;
 		
 		public synchronized void terminate() {
 			this.terminate = true;
-			solver.terminateSearch();
+			if (search != null) {
+				search.cancel(false);
+			}
+			solver.stopPondering();
 		}
 		
 		@Override
@@ -56,19 +83,35 @@ public class NineMensMorrisGUI extends JFrame {
 				int maxDepth = Integer.parseInt(maxDepthTextField.getText());
 				int maxTime = Integer.parseInt(maxTimeTextField.getText()) * 1000;
 				
-				solver.setMaxDepth(maxDepth);
-				solver.setMaxTime(maxTime);
-				
-				new Thread(new Runnable() {
+				search = searchEngine.search(currentGame, new SearchLimits(maxDepth, maxTime), new SearchListener() {
+					@Override
+					public void iterationFinished(final SearchInfo info) {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								statusLabel.setText("Making move... depth " + info.getDepth() + ", " + info.getNodesPerSecond() / 1000 + " kN/s");
+							}
+						});
+					}
+				});
+				search.thenAccept(new Consumer<SearchResult>() {
 					@Override
-					public void run() {
-						Move move = solver.searchForBestMove();
-						MoveExecutor.this.makeMove(move);
+					public void accept(final SearchResult result) {
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								MoveExecutor.this.makeMove(result.getBestMove());
+							}
+						});
 					}
-				}).start();
+				});
 			} else {
 				statusLabel.setText("Your move");
 				boardPanel.makeMove();
+				
+				if (ponderCheckBox.isSelected()) {
+					solver.startPondering();
+				}
 			}
 		}
 	}
@@ -84,13 +127,69 @@ public class NineMensMorrisGUI extends JFrame {
 		
 		int maxDepth = Integer.parseInt(maxDepthTextField.getText());
 		int maxTime = Integer.parseInt(maxTimeTextField.getText()) * 1000;
-		solver = new AlphaBetaPruning(currentGame, maxDepth, maxTime);
+		solver = new AlphaBetaPruning(currentGame, maxDepth, maxTime, transpositionTable);
+		searchEngine = new SearchEngine(solver, searchExecutor);
+		solver.setEndgameDatabase(endgameDatabase);
+		solver.setOpeningBook(openingBook);
+		solver.setBoardEvaluationFunction(evaluationWeights);
 		boardPanel.makeMove();
 	}
 	
 	public NineMensMorrisGUI() {
 		super("Nine Men's Morris");
 		
+		String endgameDirectory = System.getProperty("ninemensmorris.endgameDirectory");
+		if (endgameDirectory != null) {
+			try {
+				endgameDatabase = EndgameDatabase.load(new File(endgameDirectory));
+			} catch (IOException e) {
+				System.err.println("Cannot load the endgame database: " + e.getMessage());
+			}
+		}
+		
+		String openingBookFile = System.getProperty("ninemensmorris.openingBook");
+		if (openingBookFile != null) {
+			try {
+				openingBook = OpeningBook.read(new File(openingBookFile));
+			} catch (IOException e) {
+				System.err.println("Cannot load the opening book: " + e.getMessage());
+			}
+		}
+		
+		evaluationWeights = EvaluationWeights.DEFAULT;
+		String evaluationWeightsText = System.getProperty("ninemensmorris.evaluationWeights");
+		if (evaluationWeightsText != null) {
+			try {
+				evaluationWeights = EvaluationWeights.parse(evaluationWeightsText);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Cannot use the evaluation weights: " + e.getMessage());
+			}
+		}
+		
+		searchExecutor = SearchEngine.newExecutor(1);
+		transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MB);
+		final String transpositionTableFile = System.getProperty("ninemensmorris.transpositionTable");
+		if (transpositionTableFile != null) {
+			if (new File(transpositionTableFile).exists()) {
+				try {
+					transpositionTable.load(new File(transpositionTableFile));
+				} catch (IOException e) {
+					System.err.println("Cannot load the transposition table: " + e.getMessage());
+				}
+			}
+			
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					try {
+						transpositionTable.save(new File(transpositionTableFile));
+					} catch (IOException e) {
+						System.err.println("Cannot save the transposition table: " + e.getMessage());
+					}
+				}
+			});
+		}
+		
 		boardPanel = new NineMensMorrisBoard();
 		
 		add(boardPanel, BorderLayout.CENTER);
@@ -113,6 +212,8 @@ public class NineMensMorrisGUI extends JFrame {
 		maxDepthTextField = new JTextField(3);
 		maxDepthTextField.setText("15");
 		controls.add(maxDepthTextField);
+		ponderCheckBox = new JCheckBox("Ponder");
+		controls.add(ponderCheckBox);
 		controls.add(new JLabel("Status:"));
 		statusLabel = new JLabel("Your move");
 		controls.add(statusLabel);
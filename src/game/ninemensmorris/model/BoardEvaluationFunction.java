@@ -0,0 +1,8 @@
+package game.ninemensmorris.model;
+
+public interface BoardEvaluationFunction {
+	/**
+	 * @return the value of the board for the player on move
+	 */
+	public int evaluate(BoardState boardState);
+}
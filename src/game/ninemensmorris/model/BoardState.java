@@ -4,8 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Random;
 
 public class BoardState {
 	public static final int NUMBER_OF_POSITIONS = 24;
@@ -77,43 +76,210 @@ public class BoardState {
 		POSSIBLE_MILLS = Collections.unmodifiableList(possMills);
 	}
 	
-	private static long[] powersOf3;
+	private static final int ALL_POSITIONS_MASK = (1 << NUMBER_OF_POSITIONS) - 1;
+	private static final int[] positionToNeighboursMask;
+	private static final int[] possibleMillsMask;
+	private static final int[][] positionToMillsMask;
 	
 	static {
-		powersOf3 = new long[64];
-		powersOf3[0] = 1;
+		positionToNeighboursMask = new int[NUMBER_OF_POSITIONS];
 		
-		for (int i = 1; i < powersOf3.length; i++) {
-			powersOf3[i] = powersOf3[i - 1]  * 3;
+		for (int i = 0; i < positionToNeighboursArray.length; i++) {
+			for (int neighbour : positionToNeighboursArray[i]) {
+				positionToNeighboursMask[i] |= 1 << neighbour;
+			}
+		}
+		
+		possibleMillsMask = new int[possibleMillsArrsy.length];
+		positionToMillsMask = new int[NUMBER_OF_POSITIONS][];
+		int[] millsOfPosition = new int[NUMBER_OF_POSITIONS];
+		
+		for (int i = 0; i < possibleMillsArrsy.length; i++) {
+			for (int position : possibleMillsArrsy[i]) {
+				possibleMillsMask[i] |= 1 << position;
+				millsOfPosition[position]++;
+			}
 		}
+		
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			positionToMillsMask[i] = new int[millsOfPosition[i]];
+			millsOfPosition[i] = 0;
+		}
+		
+		for (int i = 0; i < possibleMillsMask.length; i++) {
+			for (int position : possibleMillsArrsy[i]) {
+				positionToMillsMask[position][millsOfPosition[position]++] = possibleMillsMask[i];
+			}
+		}
+	}
+	
+	/**
+	 * Upper bound of the number of valid moves in any position. Placing gives
+	 * at most 24 * 9 moves, moving 9 * 4 * 9 and flying 3 * 21 * 9.
+	 */
+	public static final int MAX_NUMBER_OF_MOVES = NUMBER_OF_POSITIONS * NUMBER_OF_POSITIONS;
+	
+	public static int getNeighboursMask(int position) {
+		return positionToNeighboursMask[position];
 	}
 	
-	private int[] positionsState;
+	public static int getNumberOfPossibleMills() {
+		return possibleMillsMask.length;
+	}
+	
+	public static int getMillMask(int mill) {
+		return possibleMillsMask[mill];
+	}
+	
+	/**
+	 * Set the ninemensmorris.verifyBoardID system property to make every
+	 * makeMove and undoMove check the incrementally updated board ID and
+	 * evaluation terms against a full recomputation.
+	 */
+	public static final boolean VERIFY_BOARD_ID = Boolean.getBoolean("ninemensmorris.verifyBoardID");
+	
+	private static final long ZOBRIST_SEED = 0x9E3779B97F4A7C15L;
+	private static final long[][] zobristPieces;
+	private static final long[][] zobristUnputPieces;
+	private static final long[][] zobristRemainingPieces;
+	private static final long zobristOtherPlayer;
+	
+	/**
+	 * Fingerprint of the keys the board IDs are made of, to check that board
+	 * IDs stored in files are still comparable.
+	 */
+	public static final long BOARD_ID_SCHEME;
+	
+	static {
+		Random random = new Random(ZOBRIST_SEED);
+		
+		zobristPieces = new long[2][NUMBER_OF_POSITIONS];
+		zobristUnputPieces = new long[2][NUMBER_OF_STARTING_PIECES + 1];
+		zobristRemainingPieces = new long[2][NUMBER_OF_STARTING_PIECES + 1];
+		
+		for (int player = 0; player < 2; player++) {
+			for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+				zobristPieces[player][i] = random.nextLong();
+			}
+			for (int i = 0; i <= NUMBER_OF_STARTING_PIECES; i++) {
+				zobristUnputPieces[player][i] = random.nextLong();
+				zobristRemainingPieces[player][i] = random.nextLong();
+			}
+		}
+		
+		zobristOtherPlayer = random.nextLong();
+		
+		long scheme = zobristOtherPlayer;
+		for (int player = 0; player < 2; player++) {
+			for (long key : zobristPieces[player]) {
+				scheme = scheme * 31 + key;
+			}
+			for (int i = 0; i <= NUMBER_OF_STARTING_PIECES; i++) {
+				scheme = (scheme * 31 + zobristUnputPieces[player][i]) * 31 + zobristRemainingPieces[player][i];
+			}
+		}
+		BOARD_ID_SCHEME = scheme;
+	}
+	
+	private static final String PLAYER_NOTATION = "WB";
+	private static final char EMPTY_POSITION_NOTATION = '.';
+	
+	private int[] playerToPieces;
 	private int currentPlayer;
 	private int[] playerToUnputPieces;
 	private int[] playerToRemainingPieces;
 	private long boardID;
+	private int[] playerToMills;
+	private int[] playerToFormableMills;
+	private int[] playerToAdjacentMoves;
 	
 	public BoardState() {
-		positionsState = new int[24];
-		for (int i = 0; i < positionsState.length; i++) {
-			positionsState[i] = 0;
-		}
+		playerToPieces = new int[2];
 		
 		currentPlayer = 0;
 		playerToUnputPieces = new int[2];
 		playerToUnputPieces[0] = playerToUnputPieces[1] = NUMBER_OF_STARTING_PIECES;
 		playerToRemainingPieces = new int[2];
 		playerToRemainingPieces[0] = playerToRemainingPieces[1] = NUMBER_OF_STARTING_PIECES;
-		boardID = 0;
+		boardID = computeBoardID();
+		initializeEvaluationTerms();
 	}
 	
 	public BoardState(BoardState state) {
-		positionsState = state.positionsState.clone();
+		playerToPieces = state.playerToPieces.clone();
 		currentPlayer = state.currentPlayer;
 		playerToUnputPieces = state.playerToUnputPieces.clone();
 		playerToRemainingPieces = state.playerToRemainingPieces.clone();
 		boardID = state.boardID;
+		playerToMills = state.playerToMills.clone();
+		playerToFormableMills = state.playerToFormableMills.clone();
+		playerToAdjacentMoves = state.playerToAdjacentMoves.clone();
+	}
+	
+	/**
+	 * Creates a board from the notation returned by {@link #toNotation()}:
+	 * the 24 positions as W, B or ., the player on move as W or B and the
+	 * unput pieces of white and black, separated by spaces, for example
+	 * "W...B................... B 8 8".
+	 */
+	public BoardState(String notation) {
+		String[] parts = notation.trim().split("\\s+");
+		if (parts.length != 4 || parts[0].length() != NUMBER_OF_POSITIONS) {
+			throw new IllegalArgumentException("Invalid board notation: " + notation);
+		}
+		
+		playerToPieces = new int[2];
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			int player = PLAYER_NOTATION.indexOf(parts[0].charAt(i));
+			if (player == -1 && parts[0].charAt(i) != EMPTY_POSITION_NOTATION) {
+				throw new IllegalArgumentException("Invalid board notation: " + notation);
+			}
+			if (player != -1) {
+				playerToPieces[player] |= 1 << i;
+			}
+		}
+		
+		if (parts[1].length() != 1 || PLAYER_NOTATION.indexOf(parts[1].charAt(0)) == -1) {
+			throw new IllegalArgumentException("Invalid board notation: " + notation);
+		}
+		currentPlayer = PLAYER_NOTATION.indexOf(parts[1].charAt(0));
+		
+		playerToUnputPieces = new int[2];
+		playerToRemainingPieces = new int[2];
+		for (int player = 0; player < 2; player++) {
+			try {
+				playerToUnputPieces[player] = Integer.parseInt(parts[2 + player]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid board notation: " + notation, e);
+			}
+			playerToRemainingPieces[player] = playerToUnputPieces[player] + Integer.bitCount(playerToPieces[player]);
+			
+			if (playerToUnputPieces[player] < 0 || playerToRemainingPieces[player] > NUMBER_OF_STARTING_PIECES) {
+				throw new IllegalArgumentException("Invalid board notation: " + notation);
+			}
+		}
+		
+		boardID = computeBoardID();
+		initializeEvaluationTerms();
+	}
+	
+	public String toNotation() {
+		StringBuilder result = new StringBuilder();
+		
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			int positionState = getPositionState(i);
+			result.append(positionState == 0 ? EMPTY_POSITION_NOTATION : PLAYER_NOTATION.charAt(positionState - 1));
+		}
+		result.append(' ').append(PLAYER_NOTATION.charAt(currentPlayer));
+		result.append(' ').append(playerToUnputPieces[0]);
+		result.append(' ').append(playerToUnputPieces[1]);
+		
+		return result.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toNotation();
 	}
 	
 	public int getPositionState(int position) {
@@ -121,7 +287,21 @@ public class BoardState {
 			throw new IllegalArgumentException();
 		}
 
-		return positionsState[position];
+		if ((playerToPieces[0] & (1 << position)) != 0) {
+			return 1;
+		} else if ((playerToPieces[1] & (1 << position)) != 0) {
+			return 2;
+		}
+		
+		return 0;
+	}
+	
+	public int getPiecesOfPlayer(int player) {
+		return playerToPieces[player];
+	}
+	
+	public int getEmptyPositions() {
+		return ~(playerToPieces[0] | playerToPieces[1]) & ALL_POSITIONS_MASK;
 	}
 
 	public int getCurrentPlayer() {
@@ -160,117 +340,353 @@ public class BoardState {
 		return boardID;
 	}
 	
+	/**
+	 * @return the ID of the board transformed by the given
+	 *         {@link BoardSymmetry symmetry}
+	 */
+	public long getBoardID(int symmetry) {
+		if (symmetry == BoardSymmetry.IDENTITY) {
+			return boardID;
+		}
+		
+		long result = boardID;
+		
+		for (int player = 0; player < 2; player++) {
+			for (int pieces = playerToPieces[player]; pieces != 0; pieces &= pieces - 1) {
+				int position = Integer.numberOfTrailingZeros(pieces);
+				result ^= zobristPieces[player][position] ^ zobristPieces[player][BoardSymmetry.transformPosition(symmetry, position)];
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the symmetry transforming the board to its canonical form, the
+	 *         one with the smallest masks of white and then of black pieces
+	 *         among all symmetric boards
+	 */
+	public int getCanonicalSymmetry() {
+		int result = BoardSymmetry.IDENTITY;
+		long smallestPieces = ((long) playerToPieces[0] << NUMBER_OF_POSITIONS) | playerToPieces[1];
+		
+		for (int symmetry = 1; symmetry < BoardSymmetry.NUMBER_OF_SYMMETRIES; symmetry++) {
+			long pieces = ((long) BoardSymmetry.transform(symmetry, playerToPieces[0]) << NUMBER_OF_POSITIONS)
+					| BoardSymmetry.transform(symmetry, playerToPieces[1]);
+			
+			if (pieces < smallestPieces) {
+				smallestPieces = pieces;
+				result = symmetry;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the same ID for all symmetric boards
+	 */
+	public long getCanonicalBoardID() {
+		return getBoardID(getCanonicalSymmetry());
+	}
+	
+	public long computeBoardID() {
+		long result = 0;
+		
+		for (int player = 0; player < 2; player++) {
+			for (int pieces = playerToPieces[player]; pieces != 0; pieces &= pieces - 1) {
+				result ^= zobristPieces[player][Integer.numberOfTrailingZeros(pieces)];
+			}
+			
+			result ^= zobristUnputPieces[player][playerToUnputPieces[player]];
+			result ^= zobristRemainingPieces[player][playerToRemainingPieces[player]];
+		}
+		
+		if (currentPlayer == 1) {
+			result ^= zobristOtherPlayer;
+		}
+		
+		return result;
+	}
+	
+	private void verifyBoardID() {
+		if (boardID != computeBoardID()) {
+			throw new IllegalStateException("Board ID " + boardID + " does not match the board, expected " + computeBoardID());
+		}
+		
+		for (int player = 0; player < 2; player++) {
+			if (playerToMills[player] != computeNumberOfMills(player)
+					|| playerToFormableMills[player] != computeNumberOfFormableMills(player)
+					|| playerToAdjacentMoves[player] != computeNumberOfAdjacentMoves(player)) {
+				throw new IllegalStateException("Evaluation terms of player " + player + " do not match the board " + toNotation());
+			}
+		}
+	}
+	
+	private void initializeEvaluationTerms() {
+		playerToMills = new int[2];
+		playerToFormableMills = new int[2];
+		playerToAdjacentMoves = new int[2];
+		
+		for (int player = 0; player < 2; player++) {
+			playerToMills[player] = computeNumberOfMills(player);
+			playerToFormableMills[player] = computeNumberOfFormableMills(player);
+			playerToAdjacentMoves[player] = computeNumberOfAdjacentMoves(player);
+		}
+	}
+	
+	private int computeNumberOfMills(int player) {
+		int result = 0;
+		
+		for (int millMask : possibleMillsMask) {
+			if ((playerToPieces[player] & millMask) == millMask) {
+				result++;
+			}
+		}
+		
+		return result;
+	}
+	
+	private int computeNumberOfFormableMills(int player) {
+		int result = 0;
+		
+		for (int millMask : possibleMillsMask) {
+			if (Integer.bitCount(playerToPieces[player] & millMask) == 2 && (playerToPieces[1 - player] & millMask) == 0) {
+				result++;
+			}
+		}
+		
+		return result;
+	}
+	
+	private int computeNumberOfAdjacentMoves(int player) {
+		int result = 0;
+		int emptyPositions = getEmptyPositions();
+		
+		for (int pieces = playerToPieces[player]; pieces != 0; pieces &= pieces - 1) {
+			result += Integer.bitCount(positionToNeighboursMask[Integer.numberOfTrailingZeros(pieces)] & emptyPositions);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * The evaluation terms below are updated by makeMove and undoMove in
+	 * constant time, as every change of a position only affects the two mills
+	 * through it and the pieces next to it.
+	 * 
+	 * @return the number of mills of the player
+	 */
+	public int getNumberOfMills(int player) {
+		return playerToMills[player];
+	}
+	
+	/**
+	 * @return the number of mills with two pieces of the player and an empty
+	 *         position
+	 */
+	public int getNumberOfFormableMills(int player) {
+		return playerToFormableMills[player];
+	}
+	
+	/**
+	 * @return the number of moves of the pieces of the player to neighbouring
+	 *         empty positions, regardless of whose turn it is and of flying
+	 */
+	public int getNumberOfAdjacentMoves(int player) {
+		return playerToAdjacentMoves[player];
+	}
+	
+	/**
+	 * Updates the mill terms for a piece of the player put on (sign 1) or
+	 * removed from (sign -1) the position, which must be empty when called.
+	 * In a mill through the position two pieces of the player make a mill of
+	 * a formable mill, one piece of the player and no other piece make a
+	 * formable mill and two other pieces lose their formable mill.
+	 */
+	private void updateMillTerms(int position, int player, int sign) {
+		int otherPlayer = 1 - player;
+		
+		for (int millMask : positionToMillsMask[position]) {
+			int pieces = Integer.bitCount(playerToPieces[player] & millMask);
+			int otherPieces = Integer.bitCount(playerToPieces[otherPlayer] & millMask);
+			
+			if (pieces == 2) {
+				playerToMills[player] += sign;
+				playerToFormableMills[player] -= sign;
+			} else if (pieces == 1 && otherPieces == 0) {
+				playerToFormableMills[player] += sign;
+			} else if (otherPieces == 2) {
+				playerToFormableMills[otherPlayer] -= sign;
+			}
+		}
+	}
+	
+	/**
+	 * Updates the adjacent moves after a piece of the player was put on (sign
+	 * 1) or removed from (sign -1) the position: the piece gains or loses the
+	 * moves to the empty neighbours and every neighbouring piece loses or
+	 * gains the move to the position.
+	 */
+	private void updateAdjacentMoves(int position, int player, int sign) {
+		int neighbours = positionToNeighboursMask[position];
+		
+		playerToAdjacentMoves[player] += sign * Integer.bitCount(neighbours & getEmptyPositions());
+		playerToAdjacentMoves[0] -= sign * Integer.bitCount(neighbours & playerToPieces[0]);
+		playerToAdjacentMoves[1] -= sign * Integer.bitCount(neighbours & playerToPieces[1]);
+	}
+	
 	public boolean hasCurrentPlayerLost() {
 		return getRemainingPiecesOfCurrentPlayer() < 3
 				|| getValidMoves(null).isEmpty();
 	}
 	
 	private void decreaseUnputPiecesOfCurrentPlayer() {
-		boardID -= (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPieces[currentPlayer][playerToUnputPieces[currentPlayer]];
 		
 		playerToUnputPieces[currentPlayer]--;
 		
-		boardID += (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
-		
+		boardID ^= zobristUnputPieces[currentPlayer][playerToUnputPieces[currentPlayer]];
 	}
 	
 	private void increaseUnputPiecesOfCurrentPlayer() {
-		boardID -= (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPieces[currentPlayer][playerToUnputPieces[currentPlayer]];
 		
 		playerToUnputPieces[currentPlayer]++;
 		
-		boardID += (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPieces[currentPlayer][playerToUnputPieces[currentPlayer]];
+	}
+	
+	private void decreaseRemainingPiecesOfOtherPlayer() {
+		int otherPlayer = getOtherPlayer();
 		
+		boardID ^= zobristRemainingPieces[otherPlayer][playerToRemainingPieces[otherPlayer]];
+		
+		playerToRemainingPieces[otherPlayer]--;
+		
+		boardID ^= zobristRemainingPieces[otherPlayer][playerToRemainingPieces[otherPlayer]];
+	}
+	
+	private void increaseRemainingPiecesOfOtherPlayer() {
+		int otherPlayer = getOtherPlayer();
+		
+		boardID ^= zobristRemainingPieces[otherPlayer][playerToRemainingPieces[otherPlayer]];
+		
+		playerToRemainingPieces[otherPlayer]++;
+		
+		boardID ^= zobristRemainingPieces[otherPlayer][playerToRemainingPieces[otherPlayer]];
 	}
 	
 	private void removeFromBoard(int position) {
-		boardID -= positionsState[position] * powersOf3[position];
+		int player = (playerToPieces[0] & (1 << position)) != 0 ? 0 : 1;
 		
-		positionsState[position] = 0;
+		boardID ^= zobristPieces[player][position];
+		
+		playerToPieces[player] &= ~(1 << position);
+		updateMillTerms(position, player, -1);
+		updateAdjacentMoves(position, player, -1);
 	}
 	
 	private void putOnBoard(int position, int player) {
-		positionsState[position] = player + 1;
+		updateMillTerms(position, player, 1);
+		playerToPieces[player] |= 1 << position;
+		updateAdjacentMoves(position, player, 1);
 		
-		boardID += positionsState[position] * powersOf3[position];
+		boardID ^= zobristPieces[player][position];
 	}
 	
 	private void tooglePlayer() {
-		boardID -= currentPlayer * powersOf3[NUMBER_OF_STARTING_PIECES];
-		
 		currentPlayer = getOtherPlayer();
 		
-		boardID += currentPlayer * powersOf3[NUMBER_OF_STARTING_PIECES];
+		boardID ^= zobristOtherPlayer;
 	}
 	
 	public void makeMove(Move move) {
-		if (move.getFromPosition() == -1) {
+		makeMove(move.encode());
+	}
+	
+	public void undoMove(Move move) {
+		undoMove(move.encode());
+	}
+	
+	public void makeMove(int move) {
+		int fromPosition = Move.decodeFromPosition(move);
+		int positionOfTakenPiece = Move.decodePositionOfTakenPiece(move);
+
+		if (fromPosition == -1) {
 			decreaseUnputPiecesOfCurrentPlayer();
 		} else {
-			removeFromBoard(move.getFromPosition());
+			removeFromBoard(fromPosition);
 		}
 		
-		putOnBoard(move.getToPosition(), currentPlayer);
+		putOnBoard(Move.decodeToPosition(move), currentPlayer);
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			removeFromBoard(move.getPositionOfTakenPiece());
-			playerToRemainingPieces[getOtherPlayer()]--;
+		if (positionOfTakenPiece != -1) {
+			removeFromBoard(positionOfTakenPiece);
+			decreaseRemainingPiecesOfOtherPlayer();
 		}
 		
 		tooglePlayer();
+		
+		if (VERIFY_BOARD_ID) {
+			verifyBoardID();
+		}
 	}
 	
-	public void undoMove(Move move) {
+	public void undoMove(int move) {
+		int fromPosition = Move.decodeFromPosition(move);
+		int positionOfTakenPiece = Move.decodePositionOfTakenPiece(move);
+
 		tooglePlayer();
 
-		if (move.getFromPosition() == -1) {
+		if (fromPosition == -1) {
 			increaseUnputPiecesOfCurrentPlayer();
 		} else {
-			putOnBoard(move.getFromPosition(), currentPlayer);
+			putOnBoard(fromPosition, currentPlayer);
 		}
 		
-		removeFromBoard(move.getToPosition());
+		removeFromBoard(Move.decodeToPosition(move));
+		
+		if (positionOfTakenPiece != -1) {
+			putOnBoard(positionOfTakenPiece, getOtherPlayer());
+			increaseRemainingPiecesOfOtherPlayer();
+		}
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			putOnBoard(move.getPositionOfTakenPiece(), getOtherPlayer());
-			playerToRemainingPieces[getOtherPlayer()]++;
+		if (VERIFY_BOARD_ID) {
+			verifyBoardID();
 		}
 	}
 	
-	public boolean areAllPiecesFromMill(int player) {
-		for (int i = 0; i < positionsState.length; i++) {
-			if (positionsState[i] == player + 1 && !doesPieceCompleteMill(-1, i, player)) {
-				return false;
+	private int getPiecesFromMill(int player) {
+		int pieces = playerToPieces[player];
+		int result = 0;
+		
+		for (int millMask : possibleMillsMask) {
+			if ((pieces & millMask) == millMask) {
+				result |= millMask;
 			}
 		}
 		
-		return true;
+		return result;
+	}
+	
+	public boolean areAllPiecesFromMill(int player) {
+		return (playerToPieces[player] & ~getPiecesFromMill(player)) == 0;
 	}
 	
 	public boolean doesPieceCompleteMill(int removeFromPosition, int position, int player) {
-		int positionState =  player + 1;
+		if (position < 0) {
+			return false;
+		}
 
-		for (List<Integer> millCoords : POSSIBLE_MILLS) {
-			if (millCoords.contains(position)) {
-				boolean result = true;
-				for (int i : millCoords) {
-					if (i == removeFromPosition) {
-						result = false;
-					} else if (i != position && positionsState[i] != positionState) {
-						result = false;
-					}
-				}
-				if (result) {
-					return true;
-				}
+		int pieces = playerToPieces[player] | (1 << position);
+		if (removeFromPosition != -1) {
+			pieces &= ~(1 << removeFromPosition);
+		}
+
+		for (int millMask : positionToMillsMask[position]) {
+			if ((pieces & millMask) == millMask) {
+				return true;
 			}
 		}
 		
@@ -278,24 +694,38 @@ public class BoardState {
 	}
 	
 	public boolean isPieceFromMill(int position) {
-		if (positionsState[position] != 0) {
-			return doesPieceCompleteMill(-1, position, positionsState[position] - 1);
+		int positionState = getPositionState(position);
+		if (positionState != 0) {
+			return doesPieceCompleteMill(-1, position, positionState - 1);
 		}
 		
 		return false;
 	}
 	
 	public boolean isMoveValid(Move move) {
-		if (positionsState[move.getToPosition()] != 0) {
+		return isMoveValid(move.encode());
+	}
+	
+	public boolean isMoveValid(int move) {
+		int fromPosition = Move.decodeFromPosition(move);
+		int toPosition = Move.decodeToPosition(move);
+		int positionOfTakenPiece = Move.decodePositionOfTakenPiece(move);
+		
+		if (move == Move.NO_MOVE || toPosition >= NUMBER_OF_POSITIONS
+				|| fromPosition >= NUMBER_OF_POSITIONS || positionOfTakenPiece >= NUMBER_OF_POSITIONS) {
+			return false;
+		}
+
+		if (getPositionState(toPosition) != 0) {
 			return false;
 		}
 			
-		if (move.getFromPosition() != -1) {
-			if (positionsState[move.getFromPosition()] - 1 != currentPlayer) {
+		if (fromPosition != -1) {
+			if (getPositionState(fromPosition) - 1 != currentPlayer) {
 				return false;
 			}
 			if ((getRemainingPiecesOfCurrentPlayer() > 3 || !IS_FLYING_ALLOWED)
-					&& !POSITION_TO_NEIGHBOURS.get(move.getFromPosition()).contains(move.getToPosition())) {
+					&& (positionToNeighboursMask[fromPosition] & (1 << toPosition)) == 0) {
 				return false;
 			}
 			if (getUnputPiecesOfCurrentPlayer() > 0) {
@@ -307,168 +737,111 @@ public class BoardState {
 			}
 		}
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			if (positionsState[move.getPositionOfTakenPiece()] - 1 != getOtherPlayer()) {
-				return false;
-			}
-			
-			if (isPieceFromMill(move.getPositionOfTakenPiece()) && !areAllPiecesFromMill(getOtherPlayer())) {
-				return false;
-			}
+		// A piece is taken exactly when the move closes a mill, and only one
+		// that move generation would offer.
+		if (doesPieceCompleteMill(fromPosition, toPosition, currentPlayer)) {
+			return positionOfTakenPiece != -1 && (getPiecesThatCanBeTaken() & (1 << positionOfTakenPiece)) != 0;
 		}
 		
-		return true;
+		return positionOfTakenPiece == -1;
 	}
 	
-	private static final class ValuedMove implements Comparable<ValuedMove> {
-		private Move move;
-		private int value;
+	private int getPiecesThatCanBeTaken() {
+		int otherPlayerPieces = playerToPieces[getOtherPlayer()];
+		int piecesFromMill = getPiecesFromMill(getOtherPlayer());
 		
-		public ValuedMove(Move move, int value) {
-			this.move = move;
-			this.value = value;
+		if ((otherPlayerPieces & ~piecesFromMill) == 0) {
+			return otherPlayerPieces;
 		}
 		
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((move == null) ? 0 : move.hashCode());
-			result = prime * result + value;
-			return result;
+		return otherPlayerPieces & ~piecesFromMill;
+	}
+	
+	private int addMoves(int[] buffer, int numberOfMoves, int fromPosition, int toPositions) {
+		int currentPlayerPieces = playerToPieces[currentPlayer];
+		if (fromPosition != -1) {
+			currentPlayerPieces &= ~(1 << fromPosition);
 		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
-			}
-			if (getClass() != obj.getClass()) {
-				return false;
-			}
-			ValuedMove other = (ValuedMove) obj;
-			if (move == null) {
-				if (other.move != null) {
-					return false;
+		int piecesThatCanBeTaken = -1;
+		
+		while (toPositions != 0) {
+			int toPosition = Integer.numberOfTrailingZeros(toPositions);
+			toPositions &= toPositions - 1;
+			
+			boolean completesMill = false;
+			int pieces = currentPlayerPieces | (1 << toPosition);
+			for (int millMask : positionToMillsMask[toPosition]) {
+				if ((pieces & millMask) == millMask) {
+					completesMill = true;
+					break;
 				}
-			} else if (!move.equals(other.move)) {
-				return false;
-			}
-			if (value != other.value) {
-				return false;
 			}
-			return true;
-		}
-
-		public Move getMove() {
-			return move;
-		}
-		
-		@SuppressWarnings("unused")
-		public int getValue() {
-			return value;
-		}
-
-		@Override
-		public int compareTo(ValuedMove o) {
-			if (value > o.value) {
-				return -1;
-			} else if (value < o.value) {
-				return 1;
-			} else if (move.hashCode() < o.move.hashCode()) {
-				return -1;
-			} else if (move.hashCode() > o.move.hashCode()) {
-				return 1;
-			} else if (move.getFromPosition() - o.move.getFromPosition() != 0) {
-				return move.getFromPosition() - o.move.getFromPosition();
-			} else if (move.getToPosition() - o.move.getToPosition() != 0) {
-				return move.getToPosition() - o.move.getToPosition();
-			} else if (move.getPositionOfTakenPiece() - o.move.getPositionOfTakenPiece() != 0) {
-				return move.getPositionOfTakenPiece() - o.move.getPositionOfTakenPiece();
+			
+			if (completesMill) {
+				if (piecesThatCanBeTaken == -1) {
+					piecesThatCanBeTaken = getPiecesThatCanBeTaken();
+				}
+				
+				for (int taken = piecesThatCanBeTaken; taken != 0; taken &= taken - 1) {
+					buffer[numberOfMoves++] = Move.encode(fromPosition, toPosition, Integer.numberOfTrailingZeros(taken));
+				}
 			} else {
-				return 0;
+				buffer[numberOfMoves++] = Move.encode(fromPosition, toPosition, -1);
 			}
 		}
+		
+		return numberOfMoves;
 	}
 	
-	private void addPossibleMillTakes(SortedSet<ValuedMove> sortedMoves,
-			Move move, MoveEvaluationFunction evaluationFunction) {
-		boolean areAllOtherPlayerPiecesFromMill = areAllPiecesFromMill(getOtherPlayer());
+	/**
+	 * Writes the valid moves of the current player, encoded with
+	 * {@link Move#encode(int, int, int)}, into the given buffer without
+	 * allocating. The buffer must have room for {@link #MAX_NUMBER_OF_MOVES}.
+	 * 
+	 * @return the number of moves written
+	 */
+	public int generateValidMoves(int[] buffer) {
+		int emptyPositions = getEmptyPositions();
+		int numberOfMoves = 0;
 		
-		for (int i = 0; i < positionsState.length; i++) {
-			if (positionsState[i] == getOtherPlayer() + 1) {
-				if (areAllOtherPlayerPiecesFromMill || !doesPieceCompleteMill(-1, i, getOtherPlayer())) {
-					move = new Move(move.getFromPosition(), move.getToPosition(), i);
-					sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-				}
+		if (getUnputPiecesOfCurrentPlayer() > 0) {
+			numberOfMoves = addMoves(buffer, numberOfMoves, -1, emptyPositions);
+		} else {
+			boolean isFlying = getRemainingPiecesOfCurrentPlayer() <= 3 && IS_FLYING_ALLOWED;
+			
+			for (int pieces = playerToPieces[currentPlayer]; pieces != 0; pieces &= pieces - 1) {
+				int fromPosition = Integer.numberOfTrailingZeros(pieces);
+				int toPositions = isFlying ? emptyPositions : positionToNeighboursMask[fromPosition] & emptyPositions;
+				
+				numberOfMoves = addMoves(buffer, numberOfMoves, fromPosition, toPositions);
 			}
 		}
+		
+		return numberOfMoves;
+	}
+	
+	/**
+	 * Fills the given list with the valid moves of the current player, all of
+	 * them with a score of 0.
+	 */
+	public void generateValidMoves(MoveList moveList) {
+		moveList.setSize(generateValidMoves(moveList.moves));
 	}
 	
 	public List<Move> getValidMoves(MoveEvaluationFunction evaluationFunction) {
-		if (evaluationFunction == null) {
-			evaluationFunction = new MoveEvaluationFunction() {
-				@Override
-				public int evaluate(BoardState boardState, Move move) {
-					return 0;
-				}
-			};
-		}
-
-		SortedSet<ValuedMove> sortedMoves = new TreeSet<ValuedMove>();
+		MoveList moveList = new MoveList();
+		generateValidMoves(moveList);
 		
-		if (getUnputPiecesOfCurrentPlayer() > 0) {
-			for (int i = 0; i < positionsState.length; i++) {
-				if (positionsState[i] == 0) {
-					Move move = new Move(i);
-					if (doesPieceCompleteMill(-1, i, currentPlayer)) {
-						addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-					} else {
-						sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-					}
-				}
-			}
-		} else {
-			if (getRemainingPiecesOfCurrentPlayer() > 3 || !IS_FLYING_ALLOWED) {
-				for (int i = 0; i < positionsState.length; i++) {
-					if (positionsState[i] == currentPlayer + 1) {
-						for (int neighbour : POSITION_TO_NEIGHBOURS.get(i)) {
-							if (positionsState[neighbour] == 0) {
-								Move move = new Move(i, neighbour);
-								if (doesPieceCompleteMill(i, neighbour, currentPlayer)) {
-									addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-								} else {
-									sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-								}
-							}
-						}
-					}
-				}
-			} else {
-				for (int i = 0; i < positionsState.length; i++) {
-					if (positionsState[i] == currentPlayer + 1) {
-						for (int j = 0; j < positionsState.length; j++) {
-							if (positionsState[j] == 0) {
-								Move move = new Move(i, j);
-								if (doesPieceCompleteMill(i, j, currentPlayer)) {
-									addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-								} else {
-									sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-								}
-							}
-						}
-					}
-				}
+		if (evaluationFunction != null) {
+			for (int i = 0; i < moveList.size(); i++) {
+				moveList.setScore(i, evaluationFunction.evaluate(this, moveList.getMove(i)));
 			}
 		}
 		
 		List<Move> result = new ArrayList<Move>();
 		
-		for (ValuedMove valuedMove : sortedMoves) {
-			result.add(valuedMove.getMove());
+		while (moveList.hasNext()) {
+			result.add(Move.decode(moveList.next()));
 		}
 		
 		return result;
@@ -0,0 +1,137 @@
+package game.ninemensmorris.model;
+
+/**
+ * The 16 symmetries of the board: the 8 rotations and reflections of the
+ * square combined with swapping the inner and the outer ring. Each of them
+ * maps neighbours to neighbours and mills to mills, so symmetric positions
+ * have the same value.
+ */
+public final class BoardSymmetry {
+	public static final int NUMBER_OF_SYMMETRIES = 16;
+	public static final int IDENTITY = 0;
+
+	private static final int NEGATE_X = 1;
+	private static final int NEGATE_Y = 2;
+	private static final int SWAP_AXES = 4;
+	private static final int SWAP_RINGS = 8;
+
+	private static final int[] positionX = {
+		-3, 0, 3, -2, 0, 2, -1, 0, 1, -3, -2, -1, 1, 2, 3, -1, 0, 1, -2, 0, 2, -3, 0, 3,
+	};
+	private static final int[] positionY = {
+		3, 3, 3, 2, 2, 2, 1, 1, 1, 0, 0, 0, 0, 0, 0, -1, -1, -1, -2, -2, -2, -3, -3, -3,
+	};
+
+	private static final int[][] permutations;
+	private static final int[] inverses;
+	private static final int[][][] byteTransforms;
+
+	static {
+		permutations = new int[NUMBER_OF_SYMMETRIES][BoardState.NUMBER_OF_POSITIONS];
+
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+				int x = positionX[position];
+				int y = positionY[position];
+
+				if ((symmetry & SWAP_RINGS) != 0) {
+					int ring = Math.max(Math.abs(x), Math.abs(y));
+					x = x / ring * (4 - ring);
+					y = y / ring * (4 - ring);
+				}
+				if ((symmetry & SWAP_AXES) != 0) {
+					int swap = x;
+					x = y;
+					y = swap;
+				}
+				if ((symmetry & NEGATE_X) != 0) {
+					x = -x;
+				}
+				if ((symmetry & NEGATE_Y) != 0) {
+					y = -y;
+				}
+
+				permutations[symmetry][position] = getPosition(x, y);
+			}
+		}
+
+		inverses = new int[NUMBER_OF_SYMMETRIES];
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			inverseLoop:
+			for (int inverse = 0; inverse < NUMBER_OF_SYMMETRIES; inverse++) {
+				for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+					if (permutations[inverse][permutations[symmetry][position]] != position) {
+						continue inverseLoop;
+					}
+				}
+
+				inverses[symmetry] = inverse;
+			}
+		}
+
+		byteTransforms = new int[NUMBER_OF_SYMMETRIES][3][256];
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			for (int part = 0; part < 3; part++) {
+				for (int bits = 0; bits < 256; bits++) {
+					int result = 0;
+					for (int i = 0; i < 8; i++) {
+						if ((bits & (1 << i)) != 0) {
+							result |= 1 << permutations[symmetry][part * 8 + i];
+						}
+					}
+
+					byteTransforms[symmetry][part][bits] = result;
+				}
+			}
+		}
+	}
+
+	private BoardSymmetry() {
+	}
+
+	private static int getPosition(int x, int y) {
+		for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+			if (positionX[position] == x && positionY[position] == y) {
+				return position;
+			}
+		}
+
+		throw new IllegalStateException();
+	}
+
+	public static int transformPosition(int symmetry, int position) {
+		return permutations[symmetry][position];
+	}
+
+	/**
+	 * @return the mask of the positions the given ones are mapped to
+	 */
+	public static int transform(int symmetry, int positions) {
+		int[][] transforms = byteTransforms[symmetry];
+
+		return transforms[0][positions & 0xFF]
+				| transforms[1][(positions >>> 8) & 0xFF]
+				| transforms[2][(positions >>> 16) & 0xFF];
+	}
+
+	public static int getInverse(int symmetry) {
+		return inverses[symmetry];
+	}
+
+	/**
+	 * @return the encoded move mapped by the symmetry or {@link Move#NO_MOVE}
+	 *         for {@link Move#NO_MOVE}
+	 */
+	public static int transformMove(int symmetry, int move) {
+		if (move == Move.NO_MOVE || symmetry == IDENTITY) {
+			return move;
+		}
+
+		int fromPosition = Move.decodeFromPosition(move);
+		int positionOfTakenPiece = Move.decodePositionOfTakenPiece(move);
+
+		return Move.encode(fromPosition == -1 ? -1 : permutations[symmetry][fromPosition],
+				permutations[symmetry][Move.decodeToPosition(move)],
+				positionOfTakenPiece == -1 ? -1 : permutations[symmetry][positionOfTakenPiece]);
+	}
+}
@@ -0,0 +1,71 @@
+package game.ninemensmorris.model;
+
+/**
+ * Weights of the static board evaluation, which is a weighted sum of the
+ * differences between the player on move and the other player in remaining
+ * pieces, adjacent moves, mills and formable mills.
+ */
+public class EvaluationWeights implements BoardEvaluationFunction {
+	public static final EvaluationWeights DEFAULT = new EvaluationWeights(10, 2, 8, 0);
+
+	private final int pieceWeight;
+	private final int adjacentMoveWeight;
+	private final int millWeight;
+	private final int formableMillWeight;
+
+	public EvaluationWeights(int pieceWeight, int adjacentMoveWeight, int millWeight, int formableMillWeight) {
+		this.pieceWeight = pieceWeight;
+		this.adjacentMoveWeight = adjacentMoveWeight;
+		this.millWeight = millWeight;
+		this.formableMillWeight = formableMillWeight;
+	}
+
+	/**
+	 * @param text the weights separated by commas in the order of the
+	 *        constructor, as written by {@link #toString()}
+	 */
+	public static EvaluationWeights parse(String text) {
+		String[] words = text.split(",");
+		if (words.length != 4) {
+			throw new IllegalArgumentException("Expected 4 weights instead of " + text);
+		}
+
+		return new EvaluationWeights(Integer.parseInt(words[0].trim()), Integer.parseInt(words[1].trim()),
+				Integer.parseInt(words[2].trim()), Integer.parseInt(words[3].trim()));
+	}
+
+	public int getPieceWeight() {
+		return pieceWeight;
+	}
+
+	public int getAdjacentMoveWeight() {
+		return adjacentMoveWeight;
+	}
+
+	public int getMillWeight() {
+		return millWeight;
+	}
+
+	public int getFormableMillWeight() {
+		return formableMillWeight;
+	}
+
+	@Override
+	public int evaluate(BoardState board) {
+		int currentPlayer = board.getCurrentPlayer();
+		int otherPlayer = board.getOtherPlayer();
+		int result = 0;
+
+		result += pieceWeight * (board.getRemainingPiecesOfCurrentPlayer() - board.getRemainingPiecesOfOtherPlayer());
+		result += adjacentMoveWeight * (board.getNumberOfAdjacentMoves(currentPlayer) - board.getNumberOfAdjacentMoves(otherPlayer));
+		result += millWeight * (board.getNumberOfMills(currentPlayer) - board.getNumberOfMills(otherPlayer));
+		result += formableMillWeight * (board.getNumberOfFormableMills(currentPlayer) - board.getNumberOfFormableMills(otherPlayer));
+
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return pieceWeight + "," + adjacentMoveWeight + "," + millWeight + "," + formableMillWeight;
+	}
+}
@@ -1,6 +1,11 @@
 package game.ninemensmorris.model;
 
 public final class Move {
+	public static final int NO_MOVE = -1;
+	
+	private static final int POSITION_BITS = 5;
+	private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+	
 	private final int fromPosition;
 	private final int toPosition;
 	private final int positionOfTakenPiece;
@@ -77,6 +82,35 @@ public final class Move {
 		this.positionOfTakenPiece = positionOfTakenPiece;
 	}
 
+	/**
+	 * Creates a move from the notation returned by {@link #toNotation()}:
+	 * the to position, preceded by the from position and a - if a piece is
+	 * moved and followed by an x and the position of the taken piece if one
+	 * is taken, for example "4", "3-4" or "3-4x10".
+	 */
+	public Move(String notation) {
+		String[] parts = notation.trim().split("x", -1);
+		String[] positions = parts[0].split("-", -1);
+		if (parts.length > 2 || positions.length > 2) {
+			throw new IllegalArgumentException("Invalid move notation: " + notation);
+		}
+		
+		try {
+			this.fromPosition = positions.length == 2 ? Integer.parseInt(positions[0]) : -1;
+			this.toPosition = Integer.parseInt(positions[positions.length - 1]);
+			this.positionOfTakenPiece = parts.length == 2 ? Integer.parseInt(parts[1]) : -1;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid move notation: " + notation, e);
+		}
+		
+		if (toPosition < 0 || toPosition >= BoardState.NUMBER_OF_POSITIONS
+				|| fromPosition < -1 || fromPosition >= BoardState.NUMBER_OF_POSITIONS
+				|| (parts.length == 2 && positionOfTakenPiece < 0) || positionOfTakenPiece >= BoardState.NUMBER_OF_POSITIONS
+				|| (positions.length == 2 && fromPosition < 0)) {
+			throw new IllegalArgumentException("Invalid move notation: " + notation);
+		}
+	}
+
 	public int getFromPosition() {
 		return fromPosition;
 	}
@@ -88,4 +122,63 @@ public final class Move {
 	public int getPositionOfTakenPiece() {
 		return positionOfTakenPiece;
 	}
+
+	/**
+	 * Packs a move into a single int: bits 0-4 hold the to position, bits
+	 * 5-9 the from position plus one and bits 10-14 the position of the
+	 * taken piece plus one, so -1 for either of them is stored as 0.
+	 */
+	public static int encode(int fromPosition, int toPosition, int positionOfTakenPiece) {
+		return toPosition
+				| ((fromPosition + 1) << POSITION_BITS)
+				| ((positionOfTakenPiece + 1) << (2 * POSITION_BITS));
+	}
+	
+	public static int decodeFromPosition(int move) {
+		return ((move >>> POSITION_BITS) & POSITION_MASK) - 1;
+	}
+	
+	public static int decodeToPosition(int move) {
+		return move & POSITION_MASK;
+	}
+	
+	public static int decodePositionOfTakenPiece(int move) {
+		return ((move >>> (2 * POSITION_BITS)) & POSITION_MASK) - 1;
+	}
+	
+	public static Move decode(int move) {
+		if (move == NO_MOVE) {
+			return null;
+		}
+		
+		int positionOfTakenPiece = decodePositionOfTakenPiece(move);
+		if (positionOfTakenPiece == -1) {
+			return new Move(decodeFromPosition(move), decodeToPosition(move));
+		}
+		
+		return new Move(decodeFromPosition(move), decodeToPosition(move), positionOfTakenPiece);
+	}
+	
+	public int encode() {
+		return encode(fromPosition, toPosition, positionOfTakenPiece);
+	}
+	
+	public String toNotation() {
+		StringBuilder result = new StringBuilder();
+		
+		if (fromPosition != -1) {
+			result.append(fromPosition).append('-');
+		}
+		result.append(toPosition);
+		if (positionOfTakenPiece != -1) {
+			result.append('x').append(positionOfTakenPiece);
+		}
+		
+		return result.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toNotation();
+	}
 }
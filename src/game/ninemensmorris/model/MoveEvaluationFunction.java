@@ -2,4 +2,12 @@ package game.ninemensmorris.model;
 
 public interface MoveEvaluationFunction {
 	public int evaluate(BoardState boardState, Move move);
+
+	/**
+	 * Evaluates an encoded move. Implementations on the search path should
+	 * override it to avoid decoding the move.
+	 */
+	public default int evaluate(BoardState boardState, int move) {
+		return evaluate(boardState, Move.decode(move));
+	}
 }
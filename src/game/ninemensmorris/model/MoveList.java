@@ -0,0 +1,89 @@
+package game.ninemensmorris.model;
+
+/**
+ * Reusable list of encoded moves with a score for each of them. The moves are
+ * handed out best first by {@link #next()}, which only selects the next best
+ * move on demand, so a cutoff after the first moves does not pay for sorting
+ * the whole list.
+ */
+public final class MoveList {
+	final int[] moves;
+	private final int[] scores;
+	private int size;
+	private int nextIndex;
+
+	public MoveList() {
+		this.moves = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		this.scores = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		this.size = 0;
+		this.nextIndex = 0;
+	}
+
+	void setSize(int size) {
+		this.size = size;
+		this.nextIndex = 0;
+
+		for (int i = 0; i < size; i++) {
+			scores[i] = 0;
+		}
+	}
+
+	public void clear() {
+		size = 0;
+		nextIndex = 0;
+	}
+
+	public void add(int move, int score) {
+		moves[size] = move;
+		scores[size] = score;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getMove(int index) {
+		return moves[index];
+	}
+
+	public int getScore(int index) {
+		return scores[index];
+	}
+
+	public void setScore(int index, int score) {
+		scores[index] = score;
+	}
+
+	public boolean hasNext() {
+		return nextIndex < size;
+	}
+
+	/**
+	 * @return the move with the highest score among the ones not returned yet,
+	 *         the first of them in list order on a tie
+	 */
+	public int next() {
+		int bestIndex = nextIndex;
+
+		for (int i = nextIndex + 1; i < size; i++) {
+			if (scores[i] > scores[bestIndex]) {
+				bestIndex = i;
+			}
+		}
+
+		int move = moves[bestIndex];
+		int score = scores[bestIndex];
+		moves[bestIndex] = moves[nextIndex];
+		scores[bestIndex] = scores[nextIndex];
+		moves[nextIndex] = move;
+		scores[nextIndex] = score;
+		nextIndex++;
+
+		return move;
+	}
+}
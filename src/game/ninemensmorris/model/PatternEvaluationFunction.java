@@ -0,0 +1,176 @@
+package game.ninemensmorris.model;
+
+import java.util.List;
+
+/**
+ * Evaluates a board by table lookups: one value per occupancy pattern of
+ * every line of three positions and one per number of remaining pieces of
+ * both players.
+ * <p>
+ * The pattern of a line is indexed by three bits of the pieces of the player
+ * on move and three bits of the other pieces, in the order of the positions
+ * in {@link BoardState#POSSIBLE_MILLS}. The horizontal lines are the
+ * consecutive groups of three bits of the board, and the vertical lines are
+ * regrouped the same way by three lookups per player, so the 16 patterns take
+ * a shift and a mask each. Every pair of neighbours lies on exactly one line,
+ * so the neighbour patterns of a position are the patterns of its two lines
+ * and terms over neighbours, such as adjacent moves, are part of the line
+ * values.
+ */
+public class PatternEvaluationFunction implements BoardEvaluationFunction {
+	public static final int NUMBER_OF_LINES = 16;
+	public static final int PATTERNS_PER_LINE = 64;
+	public static final int MATERIAL_TABLE_SIZE = (BoardState.NUMBER_OF_STARTING_PIECES + 1)
+			* (BoardState.NUMBER_OF_STARTING_PIECES + 1);
+
+	private static final int LINES_PER_DIRECTION = NUMBER_OF_LINES / 2;
+	private static final int PATTERN_MASK = 7;
+	private static final int[][] verticalLines;
+
+	static {
+		verticalLines = new int[3][256];
+		List<List<Integer>> mills = BoardState.POSSIBLE_MILLS;
+
+		for (int line = 0; line < LINES_PER_DIRECTION; line++) {
+			List<Integer> positions = mills.get(LINES_PER_DIRECTION + line);
+
+			for (int i = 0; i < positions.size(); i++) {
+				int position = positions.get(i);
+				int bit = 1 << (3 * line + i);
+
+				for (int value = 0; value < 256; value++) {
+					if ((value & (1 << (position % 8))) != 0) {
+						verticalLines[position / 8][value] |= bit;
+					}
+				}
+			}
+		}
+	}
+
+	private final int[] lineValues;
+	private final int[] materialValues;
+	private final String description;
+
+	/**
+	 * @param lineValues the value of every pattern of every line, at the
+	 *        index of the line times {@link #PATTERNS_PER_LINE} plus the bits
+	 *        of the player on move plus the bits of the other player times 8
+	 * @param materialValues the value of every number of remaining pieces, at
+	 *        the index of the pieces of the player on move times 10 plus the
+	 *        pieces of the other player
+	 */
+	public PatternEvaluationFunction(int[] lineValues, int[] materialValues) {
+		this(lineValues, materialValues, "patterns");
+	}
+
+	/**
+	 * Creates the tables that give the same values as the weights.
+	 */
+	public PatternEvaluationFunction(EvaluationWeights weights) {
+		this(getLineValues(weights), getMaterialValues(weights), "patterns of " + weights);
+	}
+
+	private PatternEvaluationFunction(int[] lineValues, int[] materialValues, String description) {
+		if (lineValues.length != NUMBER_OF_LINES * PATTERNS_PER_LINE || materialValues.length != MATERIAL_TABLE_SIZE) {
+			throw new IllegalArgumentException();
+		}
+
+		this.lineValues = lineValues.clone();
+		this.materialValues = materialValues.clone();
+		this.description = description;
+	}
+
+	private static int[] getLineValues(EvaluationWeights weights) {
+		int[] result = new int[NUMBER_OF_LINES * PATTERNS_PER_LINE];
+
+		for (int line = 0; line < NUMBER_OF_LINES; line++) {
+			for (int pieces = 0; pieces <= PATTERN_MASK; pieces++) {
+				for (int otherPieces = 0; otherPieces <= PATTERN_MASK; otherPieces++) {
+					if ((pieces & otherPieces) == 0) {
+						result[line * PATTERNS_PER_LINE + getPatternIndex(pieces, otherPieces)] = getLineValue(weights,
+								pieces, otherPieces) - getLineValue(weights, otherPieces, pieces);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the value of a line for the player of the given pieces alone
+	 */
+	private static int getLineValue(EvaluationWeights weights, int pieces, int otherPieces) {
+		int result = 0;
+		int empty = ~(pieces | otherPieces) & PATTERN_MASK;
+
+		if (pieces == PATTERN_MASK) {
+			result += weights.getMillWeight();
+		} else if (Integer.bitCount(pieces) == 2 && otherPieces == 0) {
+			result += weights.getFormableMillWeight();
+		}
+
+		// The neighbours on a line are its first and second and its second and
+		// third position.
+		for (int i = 0; i < 2; i++) {
+			int neighbours = 3 << i;
+			if ((pieces & neighbours) != 0 && (empty & neighbours) != 0) {
+				result += weights.getAdjacentMoveWeight();
+			}
+		}
+
+		return result;
+	}
+
+	private static int[] getMaterialValues(EvaluationWeights weights) {
+		int[] result = new int[MATERIAL_TABLE_SIZE];
+
+		for (int pieces = 0; pieces <= BoardState.NUMBER_OF_STARTING_PIECES; pieces++) {
+			for (int otherPieces = 0; otherPieces <= BoardState.NUMBER_OF_STARTING_PIECES; otherPieces++) {
+				result[getMaterialIndex(pieces, otherPieces)] = weights.getPieceWeight() * (pieces - otherPieces);
+			}
+		}
+
+		return result;
+	}
+
+	private static int getPatternIndex(int pieces, int otherPieces) {
+		return pieces | (otherPieces << 3);
+	}
+
+	private static int getMaterialIndex(int pieces, int otherPieces) {
+		return pieces * (BoardState.NUMBER_OF_STARTING_PIECES + 1) + otherPieces;
+	}
+
+	/**
+	 * @return the pieces with the vertical lines in place of the horizontal
+	 *         ones
+	 */
+	private static int getVerticalLines(int pieces) {
+		return verticalLines[0][pieces & 0xFF] | verticalLines[1][(pieces >>> 8) & 0xFF] | verticalLines[2][pieces >>> 16];
+	}
+
+	@Override
+	public int evaluate(BoardState boardState) {
+		int pieces = boardState.getPiecesOfPlayer(boardState.getCurrentPlayer());
+		int otherPieces = boardState.getPiecesOfPlayer(boardState.getOtherPlayer());
+		int verticalPieces = getVerticalLines(pieces);
+		int verticalOtherPieces = getVerticalLines(otherPieces);
+		int result = materialValues[getMaterialIndex(boardState.getRemainingPiecesOfCurrentPlayer(),
+				boardState.getRemainingPiecesOfOtherPlayer())];
+
+		for (int line = 0, shift = 0; line < LINES_PER_DIRECTION; line++, shift += 3) {
+			result += lineValues[line * PATTERNS_PER_LINE
+					+ getPatternIndex((pieces >>> shift) & PATTERN_MASK, (otherPieces >>> shift) & PATTERN_MASK)];
+			result += lineValues[(LINES_PER_DIRECTION + line) * PATTERNS_PER_LINE
+					+ getPatternIndex((verticalPieces >>> shift) & PATTERN_MASK, (verticalOtherPieces >>> shift) & PATTERN_MASK)];
+		}
+
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return description;
+	}
+}
@@ -1,32 +1,88 @@
 package game.ninemensmorris.model;
 
+/**
+ * Scores a move by the mills it closes, blocks or opens. The scores are
+ * weights, so that they can be tuned.
+ */
 public class SimpleMoveEvaluationFunction implements MoveEvaluationFunction {
+	private final int closeMillScore;
+	private final int blockMillNextToOtherPieceScore;
+	private final int blockMillScore;
+	private final int openMillScore;
+	private final int openMillNextToOtherPieceScore;
+
+	public SimpleMoveEvaluationFunction() {
+		this(9, 8, 4, -1, -2);
+	}
+
+	/**
+	 * @param blockMillNextToOtherPieceScore the score of blocking a mill of
+	 *        the other player that it could close by moving a piece next to
+	 *        the blocked position
+	 * @param openMillNextToOtherPieceScore the score of leaving a position
+	 *        that completes a mill of the other player with a piece next to
+	 *        it
+	 */
+	public SimpleMoveEvaluationFunction(int closeMillScore, int blockMillNextToOtherPieceScore, int blockMillScore,
+			int openMillScore, int openMillNextToOtherPieceScore) {
+		this.closeMillScore = closeMillScore;
+		this.blockMillNextToOtherPieceScore = blockMillNextToOtherPieceScore;
+		this.blockMillScore = blockMillScore;
+		this.openMillScore = openMillScore;
+		this.openMillNextToOtherPieceScore = openMillNextToOtherPieceScore;
+	}
+
+	/**
+	 * @param text the scores separated by commas in the order of the
+	 *        constructor, as written by {@link #toString()}
+	 */
+	public static SimpleMoveEvaluationFunction parse(String text) {
+		String[] words = text.split(",");
+		if (words.length != 5) {
+			throw new IllegalArgumentException("Expected 5 scores instead of " + text);
+		}
+
+		return new SimpleMoveEvaluationFunction(Integer.parseInt(words[0].trim()), Integer.parseInt(words[1].trim()),
+				Integer.parseInt(words[2].trim()), Integer.parseInt(words[3].trim()), Integer.parseInt(words[4].trim()));
+	}
+
 	@Override
 	public int evaluate(BoardState boardState, Move move) {
-		if (boardState.doesPieceCompleteMill(move.getFromPosition(), move.getToPosition(), boardState.getCurrentPlayer())) {
-			return 9;
+		return evaluate(boardState, move.encode());
+	}
+
+	@Override
+	public int evaluate(BoardState boardState, int move) {
+		int fromPosition = Move.decodeFromPosition(move);
+		int toPosition = Move.decodeToPosition(move);
+		int otherPlayerPieces = boardState.getPiecesOfPlayer(boardState.getOtherPlayer());
+
+		if (boardState.doesPieceCompleteMill(fromPosition, toPosition, boardState.getCurrentPlayer())) {
+			return closeMillScore;
 		}
 		
-		if (boardState.doesPieceCompleteMill(move.getFromPosition(), move.getToPosition(), boardState.getOtherPlayer())) {
-			for (int neighbour : BoardState.POSITION_TO_NEIGHBOURS.get(move.getToPosition())) {
-				if (boardState.getPositionState(neighbour) == boardState.getOtherPlayer() + 1) {
-					return 8;
-				}
+		if (boardState.doesPieceCompleteMill(fromPosition, toPosition, boardState.getOtherPlayer())) {
+			if ((BoardState.getNeighboursMask(toPosition) & otherPlayerPieces) != 0) {
+				return blockMillNextToOtherPieceScore;
 			}
 			
-			return 4;
+			return blockMillScore;
 		}
 		
-		if (boardState.doesPieceCompleteMill(-1, move.getFromPosition(), boardState.getOtherPlayer())) {
-			for (int neighbour : BoardState.POSITION_TO_NEIGHBOURS.get(move.getFromPosition())) {
-				if (boardState.getPositionState(neighbour) == boardState.getOtherPlayer() + 1) {
-					return -2;
-				}
+		if (boardState.doesPieceCompleteMill(-1, fromPosition, boardState.getOtherPlayer())) {
+			if ((BoardState.getNeighboursMask(fromPosition) & otherPlayerPieces) != 0) {
+				return openMillNextToOtherPieceScore;
 			}
 			
-			return -1;
+			return openMillScore;
 		}
 
 		return 0;
 	}
+
+	@Override
+	public String toString() {
+		return closeMillScore + "," + blockMillNextToOtherPieceScore + "," + blockMillScore + "," + openMillScore + ","
+				+ openMillNextToOtherPieceScore;
+	}
 }
@@ -0,0 +1,287 @@
+package game.ninemensmorris.tools;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.EvaluationWeights;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the {@link EvaluationWeights} to recorded games in the way of the
+ * Texel tuning method: the evaluation of a position, scaled by a constant and
+ * passed through the logistic function, predicts the result of its game, and
+ * the weights are changed one step at a time as long as the mean squared
+ * error of the predictions falls.
+ * <p>
+ * Every line of the input is a board notation followed by the result of the
+ * game for white, 1, 0.5 or 0, as written by {@link SelfPlay}. The file is
+ * read once and only the evaluation terms of the positions are kept, four
+ * bytes per position. The error is computed by all threads, each over its
+ * own part of the positions.
+ * <p>
+ * Usage: EvaluationTuner [-threads n] [-weights w,w,w,w] [-output file] file
+ */
+public class EvaluationTuner {
+	private static final int NUMBER_OF_TERMS = 4;
+	private static final int MAX_SCALE_STEPS = 40;
+
+	private final int numberOfThreads;
+	private byte[] terms;
+	private byte[] results;
+	private int numberOfPositions;
+
+	public EvaluationTuner(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException();
+		}
+
+		this.numberOfThreads = numberOfThreads;
+		this.terms = new byte[1024 * NUMBER_OF_TERMS];
+		this.results = new byte[1024];
+		this.numberOfPositions = 0;
+	}
+
+	public int getNumberOfPositions() {
+		return numberOfPositions;
+	}
+
+	/**
+	 * @param result the result of the game for white: 2 for a win, 1 for a
+	 *        draw and 0 for a loss
+	 */
+	public void addPosition(BoardState board, int result) {
+		if (result < 0 || result > 2) {
+			throw new IllegalArgumentException();
+		}
+
+		if (numberOfPositions == results.length) {
+			terms = Arrays.copyOf(terms, 2 * terms.length);
+			results = Arrays.copyOf(results, 2 * results.length);
+		}
+
+		int white = 0;
+		int black = 1;
+		int offset = numberOfPositions * NUMBER_OF_TERMS;
+		terms[offset] = (byte) (board.getRemainingPiecesOfPlayer(white) - board.getRemainingPiecesOfPlayer(black));
+		terms[offset + 1] = (byte) (board.getNumberOfAdjacentMoves(white) - board.getNumberOfAdjacentMoves(black));
+		terms[offset + 2] = (byte) (board.getNumberOfMills(white) - board.getNumberOfMills(black));
+		terms[offset + 3] = (byte) (board.getNumberOfFormableMills(white) - board.getNumberOfFormableMills(black));
+		results[numberOfPositions] = (byte) result;
+		numberOfPositions++;
+	}
+
+	public void read(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				int separator = line.lastIndexOf(' ');
+				try {
+					addPosition(new BoardState(line.substring(0, separator)), parseResult(line.substring(separator + 1)));
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Invalid record on line " + lineNumber + " of " + file + ": " + line, e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static int parseResult(String text) {
+		if (text.equals("1")) {
+			return 2;
+		} else if (text.equals("0.5")) {
+			return 1;
+		} else if (text.equals("0")) {
+			return 0;
+		}
+
+		throw new IllegalArgumentException("Invalid result " + text);
+	}
+
+	private double getError(int[] weights, double scale, int from, int to) {
+		double result = 0;
+
+		for (int i = from; i < to; i++) {
+			int offset = i * NUMBER_OF_TERMS;
+			int value = weights[0] * terms[offset] + weights[1] * terms[offset + 1] + weights[2] * terms[offset + 2]
+					+ weights[3] * terms[offset + 3];
+			double error = results[i] / 2.0 - 1 / (1 + Math.exp(-scale * value));
+
+			result += error * error;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the mean squared error of the predicted results
+	 */
+	public double getError(final int[] weights, final double scale, ExecutorService executor) throws InterruptedException {
+		List<Future<Double>> errors = new ArrayList<Future<Double>>();
+		int chunkSize = (numberOfPositions + numberOfThreads - 1) / numberOfThreads;
+
+		for (int from = 0; from < numberOfPositions; from += chunkSize) {
+			final int chunkFrom = from;
+			final int chunkTo = Math.min(from + chunkSize, numberOfPositions);
+
+			errors.add(executor.submit(new Callable<Double>() {
+				@Override
+				public Double call() {
+					return getError(weights, scale, chunkFrom, chunkTo);
+				}
+			}));
+		}
+
+		double result = 0;
+		try {
+			for (Future<Double> error : errors) {
+				result += error.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+
+		return result / numberOfPositions;
+	}
+
+	/**
+	 * @return the scale of the evaluation that predicts the results of the
+	 *         given weights best, found by a ternary search
+	 */
+	public double getBestScale(int[] weights, ExecutorService executor) throws InterruptedException {
+		double low = 0;
+		double high = 1;
+
+		for (int i = 0; i < MAX_SCALE_STEPS; i++) {
+			double lowThird = low + (high - low) / 3;
+			double highThird = high - (high - low) / 3;
+
+			if (getError(weights, lowThird, executor) < getError(weights, highThird, executor)) {
+				high = highThird;
+			} else {
+				low = lowThird;
+			}
+		}
+
+		return (low + high) / 2;
+	}
+
+	/**
+	 * Fits the scale to the initial weights and keeps it, so that the
+	 * weights stay on the scale of the search, then tries to raise and lower
+	 * every weight by one until no change lowers the error.
+	 */
+	public EvaluationWeights tune(EvaluationWeights initialWeights) throws InterruptedException {
+		if (numberOfPositions == 0) {
+			throw new IllegalStateException("No positions");
+		}
+
+		int[] weights = { initialWeights.getPieceWeight(), initialWeights.getAdjacentMoveWeight(),
+				initialWeights.getMillWeight(), initialWeights.getFormableMillWeight() };
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+
+		try {
+			double scale = getBestScale(weights, executor);
+			double bestError = getError(weights, scale, executor);
+			System.out.println(String.format(Locale.ROOT, "%d positions, scale %.5f, error %.6f", numberOfPositions,
+					scale, bestError));
+
+			boolean isImproved = true;
+			for (int pass = 1; isImproved; pass++) {
+				isImproved = false;
+
+				for (int i = 0; i < weights.length; i++) {
+					for (int step : new int[] { 1, -1 }) {
+						weights[i] += step;
+						double error = getError(weights, scale, executor);
+
+						if (error < bestError) {
+							bestError = error;
+							isImproved = true;
+							break;
+						}
+						weights[i] -= step;
+					}
+				}
+
+				System.out.println(String.format(Locale.ROOT, "Pass %d: weights %d,%d,%d,%d, error %.6f", pass,
+						weights[0], weights[1], weights[2], weights[3], bestError));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return new EvaluationWeights(weights[0], weights[1], weights[2], weights[3]);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		EvaluationWeights initialWeights = EvaluationWeights.DEFAULT;
+		String outputFile = null;
+		String inputFile = null;
+
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 == args.length) {
+					inputFile = args[i];
+				} else if (args[i].equals("-threads")) {
+					numberOfThreads = Integer.parseInt(args[i + 1]);
+				} else if (args[i].equals("-weights")) {
+					initialWeights = EvaluationWeights.parse(args[i + 1]);
+				} else if (args[i].equals("-output")) {
+					outputFile = args[i + 1];
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+			if (inputFile == null) {
+				throw new IllegalArgumentException();
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Usage: EvaluationTuner [-threads n] [-weights w,w,w,w] [-output file] file");
+			System.exit(2);
+		}
+
+		EvaluationTuner tuner = new EvaluationTuner(numberOfThreads);
+		long startTime = System.currentTimeMillis();
+		tuner.read(new File(inputFile));
+		System.out.println("Read " + tuner.getNumberOfPositions() + " positions in "
+				+ (System.currentTimeMillis() - startTime) + " ms");
+
+		EvaluationWeights weights = tuner.tune(initialWeights);
+		System.out.println("Tuned weights: " + weights + " in " + (System.currentTimeMillis() - startTime) / 1000 + " s");
+
+		if (outputFile != null) {
+			PrintWriter output = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "US-ASCII"));
+			try {
+				output.println(weights);
+			} finally {
+				output.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package game.ninemensmorris.tools;
+
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.MoveList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the leaf nodes of the move tree of a position to a given depth. A
+ * player with fewer than three pieces has lost, so such a position has no
+ * moves. The stored reference counts were produced by the original list
+ * based move generator and cover the placing phase, the moving phase and
+ * positions where a player is down to three pieces.
+ * <p>
+ * Usage: Perft [-threads n] depth [position] or Perft [-threads n] -verify
+ */
+public class Perft {
+	private static final String[] REFERENCE_POSITIONS = {
+		"........................ W 9 9",
+		"BB.......W....B..W...W.. W 6 6",
+		"WW.BB....W....B.......W. W 5 6",
+		"BWWBWB.BW.BW..BWB.B..BW. W 0 0",
+		".BB..BBWB.W..BW.....B.BB W 0 0",
+		"B.W.W.B....B...B.W..B.B. W 0 0",
+		"WWW.....BB.....BW...W... B 0 0",
+	};
+	private static final long[][] REFERENCE_COUNTS = {
+		{24, 552, 12144, 255024, 5140800},
+		{18, 357, 6140, 116712, 1945590},
+		{21, 400, 7900, 137494, 2548956},
+		{4, 64, 337, 5051, 29788, 443537, 2774963},
+		{5, 44, 164, 1672, 5973, 66869, 247856},
+		{8, 76, 493, 5409, 31238, 374802, 2029088},
+		{5, 33, 207, 1815, 10029, 100545, 574496},
+	};
+
+	public static int getNumberOfReferencePositions() {
+		return REFERENCE_POSITIONS.length;
+	}
+
+	public static BoardState getReferencePosition(int index) {
+		return new BoardState(REFERENCE_POSITIONS[index]);
+	}
+
+	/**
+	 * @return the reference count of the given position at the given depth or
+	 *         -1 if none is stored
+	 */
+	public static long getReferenceCount(int index, int depth) {
+		if (depth < 1 || depth > REFERENCE_COUNTS[index].length) {
+			return -1;
+		}
+
+		return REFERENCE_COUNTS[index][depth - 1];
+	}
+
+	private static MoveList[] createMoveLists(int depth) {
+		MoveList[] moveLists = new MoveList[depth + 1];
+		for (int i = 0; i < moveLists.length; i++) {
+			moveLists[i] = new MoveList();
+		}
+
+		return moveLists;
+	}
+
+	private static long perft(BoardState board, int depth, MoveList[] moveLists) {
+		if (board.getRemainingPiecesOfCurrentPlayer() < 3) {
+			return 0;
+		}
+
+		MoveList moveList = moveLists[depth];
+		board.generateValidMoves(moveList);
+
+		if (depth == 1) {
+			return moveList.size();
+		}
+
+		long result = 0;
+		for (int i = 0; i < moveList.size(); i++) {
+			int move = moveList.getMove(i);
+
+			board.makeMove(move);
+			result += perft(board, depth - 1, moveLists);
+			board.undoMove(move);
+		}
+
+		return result;
+	}
+
+	public static long perft(BoardState board, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+
+		return perft(new BoardState(board), depth, createMoveLists(depth));
+	}
+
+	/**
+	 * Splits the work at the root: every move of the position is counted by a
+	 * separate task on its own copy of the board.
+	 */
+	public static long perft(BoardState board, final int depth, int numberOfThreads) throws InterruptedException {
+		if (numberOfThreads == 1 || depth <= 1 || board.getRemainingPiecesOfCurrentPlayer() < 3) {
+			return perft(board, depth);
+		}
+
+		MoveList moveList = new MoveList();
+		board.generateValidMoves(moveList);
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+
+			for (int i = 0; i < moveList.size(); i++) {
+				final BoardState childBoard = new BoardState(board);
+				childBoard.makeMove(moveList.getMove(i));
+
+				results.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						return perft(childBoard, depth - 1);
+					}
+				}));
+			}
+
+			long result = 0;
+			for (Future<Long> childResult : results) {
+				result += childResult.get();
+			}
+
+			return result;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static boolean verify(int numberOfThreads) throws InterruptedException {
+		boolean result = true;
+
+		for (int i = 0; i < REFERENCE_POSITIONS.length; i++) {
+			BoardState board = getReferencePosition(i);
+
+			for (int depth = 1; depth <= REFERENCE_COUNTS[i].length; depth++) {
+				long count = perft(board, depth, numberOfThreads);
+				boolean isCorrect = count == getReferenceCount(i, depth);
+
+				System.out.println(board + " depth " + depth + ": " + count
+						+ (isCorrect ? "" : " expected " + getReferenceCount(i, depth)));
+				result &= isCorrect;
+			}
+		}
+
+		return result;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int numberOfThreads = 1;
+		int argument = 0;
+
+		if (args.length > 1 && args[0].equals("-threads")) {
+			numberOfThreads = Integer.parseInt(args[1]);
+			argument = 2;
+		}
+
+		if (args.length == argument + 1 && args[argument].equals("-verify")) {
+			boolean isCorrect = verify(numberOfThreads);
+			System.out.println(isCorrect ? "All counts match" : "Counts differ");
+			System.exit(isCorrect ? 0 : 1);
+		}
+
+		if (args.length != argument + 1 && args.length != argument + 2) {
+			System.err.println("Usage: Perft [-threads n] depth [position] | Perft [-threads n] -verify");
+			System.exit(2);
+		}
+
+		int depth = Integer.parseInt(args[argument]);
+		BoardState board = args.length == argument + 2 ? new BoardState(args[argument + 1]) : new BoardState();
+
+		for (int i = 1; i <= depth; i++) {
+			long startTime = System.nanoTime();
+			long count = perft(board, i, numberOfThreads);
+			long time = System.nanoTime() - startTime;
+
+			System.out.println("depth " + i + ": " + count + " nodes, " + time / 1000000 + " ms, "
+					+ (time > 0 ? count * 1000000000L / time : 0) + " nodes/s");
+		}
+	}
+}
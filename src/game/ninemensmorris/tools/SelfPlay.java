@@ -0,0 +1,518 @@
+package game.ninemensmorris.tools;
+
+import game.ninemensmorris.algorithms.AlphaBetaPruning;
+import game.ninemensmorris.model.BoardEvaluationFunction;
+import game.ninemensmorris.model.BoardState;
+import game.ninemensmorris.model.EvaluationWeights;
+import game.ninemensmorris.model.Move;
+import game.ninemensmorris.model.MoveList;
+import game.ninemensmorris.model.PatternEvaluationFunction;
+import game.ninemensmorris.model.SimpleMoveEvaluationFunction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays games between two engine configurations on all cores and reports
+ * the score of the first one with its Elo difference and, if bounds are
+ * given, a sequential probability ratio test.
+ * <p>
+ * Every opening is played twice with the sides swapped. The openings are
+ * random moves from the start or the board notations of a file, one per
+ * line. A game is drawn when a position repeats three times or after the
+ * maximal number of plies. The positions of the games can be recorded for the
+ * {@link EvaluationTuner}.
+ * <p>
+ * Usage: SelfPlay [-games n] [-threads n] [-hash mb] [-openings file] [-plies
+ * n] [-seed n] [-maxplies n] [-sprt elo0,elo1] [-record file] [-depthA n]
+ * [-timeA ms] [-weightsA w,w,w,w] [-patternsA true|false] [-orderingA
+ * s,s,s,s,s] and the same options ending in B for the second configuration
+ */
+public class SelfPlay {
+	private static final int DRAW = -1;
+	private static final int REPETITIONS_FOR_DRAW = 3;
+	private static final double SPRT_ALPHA = 0.05;
+	private static final double SPRT_BETA = 0.05;
+	private static final int REPORT_INTERVAL = 20;
+
+	/**
+	 * Search limits and evaluation of an engine.
+	 */
+	public static class Configuration {
+		private final int maxDepth;
+		private final int maxTime;
+		private final BoardEvaluationFunction boardEvaluationFunction;
+		private final SimpleMoveEvaluationFunction moveEvaluationFunction;
+
+		public Configuration(int maxDepth, int maxTime, BoardEvaluationFunction boardEvaluationFunction,
+				SimpleMoveEvaluationFunction moveEvaluationFunction) {
+			if (maxDepth < 1 || maxTime < 0) {
+				throw new IllegalArgumentException();
+			}
+
+			this.maxDepth = maxDepth;
+			this.maxTime = maxTime;
+			this.boardEvaluationFunction = boardEvaluationFunction;
+			this.moveEvaluationFunction = moveEvaluationFunction;
+		}
+
+		AlphaBetaPruning newSolver(int transpositionTableSizeInMB) {
+			AlphaBetaPruning result = new AlphaBetaPruning(new BoardState(), maxDepth, maxTime, transpositionTableSizeInMB);
+			result.setBoardEvaluationFunction(boardEvaluationFunction);
+			result.setMoveEvaluationFunction(moveEvaluationFunction);
+
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "depth " + maxDepth + (maxTime == Integer.MAX_VALUE ? "" : ", time " + maxTime + " ms") + ", evaluation "
+					+ boardEvaluationFunction + ", ordering " + moveEvaluationFunction;
+		}
+	}
+
+	/**
+	 * Wins, draws and losses of one side of a match.
+	 */
+	public static class Score {
+		private int wins;
+		private int draws;
+		private int losses;
+
+		void add(int result) {
+			if (result > 0) {
+				wins++;
+			} else if (result == 0) {
+				draws++;
+			} else {
+				losses++;
+			}
+		}
+
+		public int getNumberOfGames() {
+			return wins + draws + losses;
+		}
+
+		public double getScore() {
+			return (wins + draws / 2.0) / getNumberOfGames();
+		}
+
+		/**
+		 * @return the variance of the score of a single game
+		 */
+		private double getVariance() {
+			double score = getScore();
+			int games = getNumberOfGames();
+
+			return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / games;
+		}
+
+		public static double getEloDifference(double score) {
+			return -400 * Math.log10(1 / score - 1);
+		}
+
+		private static double getExpectedScore(double eloDifference) {
+			return 1 / (1 + Math.pow(10, -eloDifference / 400));
+		}
+
+		public double getEloDifference() {
+			return getEloDifference(getScore());
+		}
+
+		/**
+		 * @return half the width of the 95% confidence interval of the Elo
+		 *         difference
+		 */
+		public double getEloError() {
+			double margin = 1.96 * Math.sqrt(getVariance() / getNumberOfGames());
+			return (getEloDifference(getScore() + margin) - getEloDifference(getScore() - margin)) / 2;
+		}
+
+		/**
+		 * @return the log-likelihood ratio of the Elo difference being elo1
+		 *         against it being elo0, approximating the game results by a
+		 *         normal distribution
+		 */
+		public double getLogLikelihoodRatio(double elo0, double elo1) {
+			if (wins == 0 || losses == 0) {
+				return 0;
+			}
+
+			double score0 = getExpectedScore(elo0);
+			double score1 = getExpectedScore(elo1);
+			double variance = getVariance() / getNumberOfGames();
+
+			return (score1 - score0) * (2 * getScore() - score0 - score1) / (2 * variance);
+		}
+
+		@Override
+		public String toString() {
+			return "+" + wins + " =" + draws + " -" + losses;
+		}
+	}
+
+	private final Configuration[] configurations;
+	private final int numberOfThreads;
+	private final int transpositionTableSizeInMB;
+	private final int maxPlies;
+	private final double[] sprtBounds;
+	private PrintWriter record;
+	private final Score score;
+	private final AtomicInteger nextOpening;
+	private long startTime;
+	private volatile boolean isDecided;
+
+	/**
+	 * @param sprtBounds elo0 and elo1 of the test or null to play all games
+	 */
+	public SelfPlay(Configuration first, Configuration second, int numberOfThreads, int transpositionTableSizeInMB,
+			int maxPlies, double[] sprtBounds) {
+		if (numberOfThreads < 1 || maxPlies < 1 || (sprtBounds != null && sprtBounds.length != 2)) {
+			throw new IllegalArgumentException();
+		}
+
+		this.configurations = new Configuration[] { first, second };
+		this.numberOfThreads = numberOfThreads;
+		this.transpositionTableSizeInMB = transpositionTableSizeInMB;
+		this.maxPlies = maxPlies;
+		this.sprtBounds = sprtBounds;
+		this.score = new Score();
+		this.nextOpening = new AtomicInteger();
+	}
+
+	/**
+	 * @param record receives every position of the games before a move with
+	 *        the result of its game for white, 1, 0.5 or 0, or null
+	 */
+	public void setRecord(PrintWriter record) {
+		this.record = record;
+	}
+
+	/**
+	 * @return the openings made of the given number of random moves from the
+	 *         start, leaving out those in which the player on move has lost
+	 */
+	public static List<BoardState> getRandomOpenings(int numberOfOpenings, int numberOfPlies, long seed) {
+		List<BoardState> result = new ArrayList<BoardState>();
+		Random random = new Random(seed);
+		MoveList moveList = new MoveList();
+
+		while (result.size() < numberOfOpenings) {
+			BoardState board = new BoardState();
+
+			for (int i = 0; i < numberOfPlies && !board.hasCurrentPlayerLost(); i++) {
+				board.generateValidMoves(moveList);
+				board.makeMove(moveList.getMove(random.nextInt(moveList.size())));
+			}
+
+			if (!board.hasCurrentPlayerLost()) {
+				result.add(board);
+			}
+		}
+
+		return result;
+	}
+
+	public static List<BoardState> readOpenings(File file) throws IOException {
+		List<BoardState> result = new ArrayList<BoardState>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					result.add(new BoardState(line));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param solvers the solvers by player
+	 * @return the winning player or {@link #DRAW}
+	 */
+	private int playGame(BoardState opening, AlphaBetaPruning[] solvers, List<String> positions) {
+		BoardState board = new BoardState(opening);
+		Map<Long, Integer> repetitions = new HashMap<Long, Integer>();
+		repetitions.put(board.getBoardID(), 1);
+
+		for (AlphaBetaPruning solver : solvers) {
+			solver.getTranspositionTable().clear();
+		}
+
+		for (int ply = 0; ply < maxPlies; ply++) {
+			if (board.hasCurrentPlayerLost()) {
+				return board.getOtherPlayer();
+			}
+
+			positions.add(board.toNotation());
+			AlphaBetaPruning solver = solvers[board.getCurrentPlayer()];
+			solver.setBoardState(new BoardState(board));
+			Move move = solver.searchForBestMove();
+			if (move == null) {
+				return board.getOtherPlayer();
+			}
+			board.makeMove(move);
+
+			Integer count = repetitions.get(board.getBoardID());
+			count = count == null ? 1 : count + 1;
+			if (count == REPETITIONS_FOR_DRAW) {
+				return DRAW;
+			}
+			repetitions.put(board.getBoardID(), count);
+		}
+
+		return DRAW;
+	}
+
+	/**
+	 * @return the result of the first configuration: 1 for a win, 0 for a
+	 *         draw and -1 for a loss
+	 */
+	private int playGame(BoardState opening, AlphaBetaPruning first, AlphaBetaPruning second, boolean isFirstOnMove) {
+		AlphaBetaPruning[] solvers = new AlphaBetaPruning[2];
+		int firstPlayer = isFirstOnMove ? opening.getCurrentPlayer() : opening.getOtherPlayer();
+		solvers[firstPlayer] = first;
+		solvers[1 - firstPlayer] = second;
+
+		List<String> positions = new ArrayList<String>();
+		int winner = playGame(opening, solvers, positions);
+		if (record != null) {
+			record(positions, winner == DRAW ? "0.5" : winner == 0 ? "1" : "0");
+		}
+
+		if (winner == DRAW) {
+			return 0;
+		}
+
+		return winner == firstPlayer ? 1 : -1;
+	}
+
+	private void record(List<String> positions, String result) {
+		synchronized (record) {
+			for (String position : positions) {
+				record.println(position + " " + result);
+			}
+		}
+	}
+
+	private void playOpenings(List<BoardState> openings, int numberOfGames) {
+		AlphaBetaPruning first = configurations[0].newSolver(transpositionTableSizeInMB);
+		AlphaBetaPruning second = configurations[1].newSolver(transpositionTableSizeInMB);
+		int opening;
+
+		while (!isDecided && (opening = nextOpening.getAndIncrement()) < (numberOfGames + 1) / 2) {
+			BoardState board = openings.get(opening % openings.size());
+			addResult(playGame(board, first, second, true));
+			if (2 * opening + 1 < numberOfGames) {
+				addResult(playGame(board, first, second, false));
+			}
+		}
+	}
+
+	private synchronized void addResult(int result) {
+		score.add(result);
+
+		if (sprtBounds != null && !isDecided) {
+			double logLikelihoodRatio = score.getLogLikelihoodRatio(sprtBounds[0], sprtBounds[1]);
+			isDecided = logLikelihoodRatio <= getLowerSprtBound() || logLikelihoodRatio >= getUpperSprtBound();
+		}
+
+		if (score.getNumberOfGames() % REPORT_INTERVAL == 0) {
+			report();
+		}
+	}
+
+	private static double getLowerSprtBound() {
+		return Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+	}
+
+	private static double getUpperSprtBound() {
+		return Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+	}
+
+	private synchronized void report() {
+		long time = Math.max(System.currentTimeMillis() - startTime, 1);
+		StringBuilder line = new StringBuilder();
+
+		line.append(String.format(Locale.ROOT, "Games %d: %s, score %.3f, Elo %.1f +- %.1f", score.getNumberOfGames(),
+				score, score.getScore(), score.getEloDifference(), score.getEloError()));
+		if (sprtBounds != null) {
+			line.append(String.format(Locale.ROOT, ", LLR %.2f (%.2f, %.2f)",
+					score.getLogLikelihoodRatio(sprtBounds[0], sprtBounds[1]), getLowerSprtBound(), getUpperSprtBound()));
+		}
+		line.append(String.format(Locale.ROOT, ", %.0f games/h", score.getNumberOfGames() * 3600000.0 / time));
+
+		System.out.println(line);
+	}
+
+	/**
+	 * Plays up to the given number of games, stopping early once the
+	 * sequential probability ratio test accepts one of its hypotheses.
+	 */
+	public Score play(final List<BoardState> openings, final int numberOfGames) throws InterruptedException {
+		if (openings.isEmpty() || numberOfGames < 1) {
+			throw new IllegalArgumentException();
+		}
+
+		startTime = System.currentTimeMillis();
+		Thread[] threads = new Thread[numberOfThreads];
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					playOpenings(openings, numberOfGames);
+				}
+			}, "self-play-" + i);
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		if (score.getNumberOfGames() % REPORT_INTERVAL != 0) {
+			report();
+		}
+		if (sprtBounds != null) {
+			double logLikelihoodRatio = score.getLogLikelihoodRatio(sprtBounds[0], sprtBounds[1]);
+			System.out.println(logLikelihoodRatio >= getUpperSprtBound() ? "SPRT: H1 accepted"
+					: logLikelihoodRatio <= getLowerSprtBound() ? "SPRT: H0 accepted" : "SPRT: inconclusive");
+		}
+
+		return score;
+	}
+
+	private static double[] parseSprtBounds(String text) {
+		String[] words = text.split(",");
+		if (words.length != 2) {
+			throw new IllegalArgumentException();
+		}
+
+		return new double[] { Double.parseDouble(words[0]), Double.parseDouble(words[1]) };
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numberOfGames = 1000;
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		int transpositionTableSizeInMB = 16;
+		String openingsFile = null;
+		String recordFile = null;
+		int numberOfPlies = 4;
+		long seed = System.nanoTime();
+		int maxPlies = 200;
+		double[] sprtBounds = null;
+		int[] maxDepth = { 8, 8 };
+		int[] maxTime = { Integer.MAX_VALUE, Integer.MAX_VALUE };
+		EvaluationWeights[] evaluationWeights = { EvaluationWeights.DEFAULT, EvaluationWeights.DEFAULT };
+		boolean[] arePatternsUsed = { false, false };
+		SimpleMoveEvaluationFunction[] moveEvaluationFunctions = { new SimpleMoveEvaluationFunction(),
+				new SimpleMoveEvaluationFunction() };
+
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException();
+				}
+
+				String option = args[i];
+				String value = args[i + 1];
+				int configuration = option.endsWith("A") ? 0 : 1;
+
+				if (option.equals("-games")) {
+					numberOfGames = Integer.parseInt(value);
+				} else if (option.equals("-threads")) {
+					numberOfThreads = Integer.parseInt(value);
+				} else if (option.equals("-hash")) {
+					transpositionTableSizeInMB = Integer.parseInt(value);
+				} else if (option.equals("-record")) {
+					recordFile = value;
+				} else if (option.equals("-openings")) {
+					openingsFile = value;
+				} else if (option.equals("-plies")) {
+					numberOfPlies = Integer.parseInt(value);
+				} else if (option.equals("-seed")) {
+					seed = Long.parseLong(value);
+				} else if (option.equals("-maxplies")) {
+					maxPlies = Integer.parseInt(value);
+				} else if (option.equals("-sprt")) {
+					sprtBounds = parseSprtBounds(value);
+				} else if (option.equals("-depthA") || option.equals("-depthB")) {
+					maxDepth[configuration] = Integer.parseInt(value);
+				} else if (option.equals("-timeA") || option.equals("-timeB")) {
+					maxTime[configuration] = Integer.parseInt(value);
+				} else if (option.equals("-weightsA") || option.equals("-weightsB")) {
+					evaluationWeights[configuration] = EvaluationWeights.parse(value);
+				} else if (option.equals("-patternsA") || option.equals("-patternsB")) {
+					if (!value.equals("true") && !value.equals("false")) {
+						throw new IllegalArgumentException();
+					}
+					arePatternsUsed[configuration] = value.equals("true");
+				} else if (option.equals("-orderingA") || option.equals("-orderingB")) {
+					moveEvaluationFunctions[configuration] = SimpleMoveEvaluationFunction.parse(value);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Usage: SelfPlay [-games n] [-threads n] [-hash mb] [-openings file] [-plies n] [-seed n]"
+					+ " [-maxplies n] [-sprt elo0,elo1] [-record file] [-depthA n] [-timeA ms] [-weightsA w,w,w,w]"
+					+ " [-patternsA true|false] [-orderingA s,s,s,s,s] [-depthB n] [-timeB ms] [-weightsB w,w,w,w]"
+					+ " [-patternsB true|false] [-orderingB s,s,s,s,s]");
+			System.exit(2);
+		}
+
+		List<BoardState> openings;
+		if (openingsFile != null) {
+			openings = readOpenings(new File(openingsFile));
+		} else {
+			System.out.println("Random openings of " + numberOfPlies + " plies, seed " + seed);
+			openings = getRandomOpenings((numberOfGames + 1) / 2, numberOfPlies, seed);
+		}
+
+		Configuration[] configurations = new Configuration[2];
+		for (int i = 0; i < configurations.length; i++) {
+			BoardEvaluationFunction boardEvaluationFunction = arePatternsUsed[i]
+					? new PatternEvaluationFunction(evaluationWeights[i]) : evaluationWeights[i];
+			configurations[i] = new Configuration(maxDepth[i], maxTime[i], boardEvaluationFunction, moveEvaluationFunctions[i]);
+		}
+		Configuration first = configurations[0];
+		Configuration second = configurations[1];
+		System.out.println("A: " + first);
+		System.out.println("B: " + second);
+
+		SelfPlay selfPlay = new SelfPlay(first, second, numberOfThreads, transpositionTableSizeInMB, maxPlies, sprtBounds);
+		PrintWriter record = null;
+		if (recordFile != null) {
+			record = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(recordFile), "US-ASCII")));
+			selfPlay.setRecord(record);
+		}
+
+		try {
+			selfPlay.play(openings, numberOfGames);
+		} finally {
+			if (record != null) {
+				record.close();
+			}
+		}
+	}
+}